@@ -0,0 +1,45 @@
+package com.ahmed.iptvapp.cache;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Sets of favorite keys, one per user, playlist and content type.
+ * A set is either loaded (possibly empty) or absent; absent sets are loaded from the database by the caller,
+ * so the store only ever answers for what it holds in full.
+ */
+public interface FavoriteSetStore {
+
+    /**
+     * Get the members of a set
+     *
+     * @param key Set key
+     * @return Optional containing the members if the set is loaded
+     */
+    Optional<Set<String>> members(String key);
+
+    /**
+     * Load a set, replacing nothing if it is already loaded
+     *
+     * @param key Set key
+     * @param members Members of the set
+     */
+    void load(String key, Collection<String> members);
+
+    /**
+     * Add a member that is not in the set, or remove it if it is
+     *
+     * @param key Set key
+     * @param member Member to toggle
+     * @return Optional containing whether the member is in the set now, empty if the set is not loaded
+     */
+    Optional<Boolean> toggle(String key, String member);
+
+    /**
+     * Drop a set
+     *
+     * @param key Set key
+     */
+    void remove(String key);
+}
@@ -0,0 +1,12 @@
+package com.ahmed.iptvapp.cache;
+
+/**
+ * Lease on an import key, as answered by {@link ImportLeaseStore#acquire(String, String, long)}
+ *
+ * @param key Leased key
+ * @param holder Task id of the import holding the lease
+ * @param token Fencing token: a new lease on a key always has a greater one than those before it
+ * @param owned Whether the caller took the lease, or found it held by another import
+ */
+public record ImportLease(String key, String holder, long token, boolean owned) {
+}
@@ -0,0 +1,35 @@
+package com.ahmed.iptvapp.cache;
+
+/**
+ * Leases that let a single import or refresh run per key (a playlist, or a URL being imported) across all
+ * instances. A lease expires unless renewed, so a crashed instance never holds a key for long; each lease
+ * carries a fencing token, which writes check to tell a holder whose lease expired from the current one.
+ */
+public interface ImportLeaseStore {
+
+    /**
+     * Take the lease of a key, unless another holder has it
+     *
+     * @param key Key to lease
+     * @param holder Task id of the caller
+     * @param ttlMillis How long the lease lasts unless renewed
+     * @return the lease taken, or the one held by another import
+     */
+    ImportLease acquire(String key, String holder, long ttlMillis);
+
+    /**
+     * Extend a lease
+     *
+     * @param lease Lease taken by the caller
+     * @param ttlMillis How long the lease lasts from now
+     * @return false if the lease expired and may be held by someone else
+     */
+    boolean renew(ImportLease lease, long ttlMillis);
+
+    /**
+     * Give a lease up, if still held
+     *
+     * @param lease Lease taken by the caller
+     */
+    void release(ImportLease lease);
+}
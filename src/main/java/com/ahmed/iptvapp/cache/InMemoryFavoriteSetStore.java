@@ -0,0 +1,51 @@
+package com.ahmed.iptvapp.cache;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process favorite sets, used when app.cache.type is memory.
+ * Sets stay loaded for the lifetime of the process; they only hold keys, so they stay small.
+ */
+@Slf4j
+public class InMemoryFavoriteSetStore implements FavoriteSetStore {
+
+    private final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<Set<String>> members(String key) {
+        Set<String> members = sets.get(key);
+        return members == null ? Optional.empty() : Optional.of(Set.copyOf(members));
+    }
+
+    @Override
+    public void load(String key, Collection<String> members) {
+        sets.computeIfAbsent(key, k -> {
+            Set<String> set = ConcurrentHashMap.newKeySet();
+            set.addAll(members);
+            return set;
+        });
+        log.trace("Loaded favorites: {}", key);
+    }
+
+    @Override
+    public Optional<Boolean> toggle(String key, String member) {
+        boolean[] added = new boolean[1];
+        // Toggles of one set are serialized by the map
+        Set<String> members = sets.computeIfPresent(key, (k, set) -> {
+            added[0] = !set.remove(member) && set.add(member);
+            return set;
+        });
+        return members == null ? Optional.empty() : Optional.of(added[0]);
+    }
+
+    @Override
+    public void remove(String key) {
+        sets.remove(key);
+    }
+}
@@ -0,0 +1,45 @@
+package com.ahmed.iptvapp.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process import leases, used when app.cache.type is memory; they only exclude imports of this instance.
+ */
+public class InMemoryImportLeaseStore implements ImportLeaseStore {
+
+    private final Map<String, Held> leases = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong();
+
+    @Override
+    public ImportLease acquire(String key, String holder, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        // Leases of one key are serialized by the map
+        Held held = leases.compute(key, (k, current) -> current != null && current.expiresAt() > now
+                ? current
+                : new Held(new ImportLease(key, holder, tokens.incrementAndGet(), true), now + ttlMillis));
+        ImportLease lease = held.lease();
+        return lease.holder().equals(holder) ? lease : new ImportLease(key, lease.holder(), lease.token(), false);
+    }
+
+    @Override
+    public boolean renew(ImportLease lease, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        Held renewed = leases.computeIfPresent(lease.key(), (k, current) ->
+                current.isOf(lease) && current.expiresAt() > now ? new Held(current.lease(), now + ttlMillis) : current);
+        return renewed != null && renewed.isOf(lease) && renewed.expiresAt() > now;
+    }
+
+    @Override
+    public void release(ImportLease lease) {
+        leases.computeIfPresent(lease.key(), (k, current) -> current.isOf(lease) ? null : current);
+    }
+
+    private record Held(ImportLease lease, long expiresAt) {
+
+        boolean isOf(ImportLease other) {
+            return lease.token() == other.token() && lease.holder().equals(other.holder());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.ahmed.iptvapp.cache;
+
+import com.ahmed.iptvapp.dto.WatchProgressDto;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-process watch histories, used when app.cache.type is memory.
+ * Bounded twice: each history keeps its most recent items, and the histories of the least recently active
+ * users are dropped beyond maxUsers, to be loaded again from the database if they come back.
+ */
+@Slf4j
+public class InMemoryWatchHistoryStore implements WatchHistoryStore {
+
+    private final Map<String, LinkedHashMap<String, WatchProgressDto>> histories;
+
+    public InMemoryWatchHistoryStore(int maxUsers) {
+        this.histories = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LinkedHashMap<String, WatchProgressDto>> eldest) {
+                return size() > maxUsers;
+            }
+        });
+    }
+
+    @Override
+    public Optional<List<WatchProgressDto>> recent(String userId, int limit) {
+        LinkedHashMap<String, WatchProgressDto> history = histories.get(userId);
+        if (history == null) {
+            return Optional.empty();
+        }
+        synchronized (history) {
+            // Most recently watched last
+            List<WatchProgressDto> recent = new ArrayList<>(history.values());
+            Collections.reverse(recent);
+            return Optional.of(recent.subList(0, Math.min(limit, recent.size())));
+        }
+    }
+
+    @Override
+    public Optional<Map<String, WatchProgressDto>> positions(String userId, List<String> items) {
+        LinkedHashMap<String, WatchProgressDto> history = histories.get(userId);
+        if (history == null) {
+            return Optional.empty();
+        }
+        Map<String, WatchProgressDto> positions = new HashMap<>();
+        synchronized (history) {
+            for (String item : items) {
+                WatchProgressDto progress = history.get(item);
+                if (progress != null) {
+                    positions.put(item, progress);
+                }
+            }
+        }
+        return Optional.of(positions);
+    }
+
+    @Override
+    public boolean record(String userId, String item, WatchProgressDto progress, int maxItems) {
+        LinkedHashMap<String, WatchProgressDto> history = histories.get(userId);
+        if (history == null) {
+            return false;
+        }
+        synchronized (history) {
+            history.remove(item);
+            history.put(item, progress);
+            Iterator<String> eldest = history.keySet().iterator();
+            while (history.size() > maxItems) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void load(String userId, Map<String, WatchProgressDto> progress) {
+        histories.computeIfAbsent(userId, id -> {
+            LinkedHashMap<String, WatchProgressDto> history = new LinkedHashMap<>();
+            progress.entrySet().stream()
+                    .sorted(Map.Entry.comparingByValue((a, b) -> Long.compare(a.getWatchedAt(), b.getWatchedAt())))
+                    .forEach(entry -> history.put(entry.getKey(), entry.getValue()));
+            return history;
+        });
+        log.trace("Loaded watch history of user {}", userId);
+    }
+
+    @Override
+    public void remove(String userId) {
+        histories.remove(userId);
+    }
+}
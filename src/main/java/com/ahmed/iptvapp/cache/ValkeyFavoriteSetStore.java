@@ -0,0 +1,80 @@
+package com.ahmed.iptvapp.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Valkey/Redis favorite sets, shared by every instance.
+ * Valkey drops empty sets, so a loaded set always holds a marker member besides the favorites. Toggles run as
+ * a script, so a toggle is a single round trip and never recreates a set that expired in the meantime.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ValkeyFavoriteSetStore implements FavoriteSetStore {
+
+    private static final String LOADED = "\u0000";
+
+    // Returns 1 if the member was added, 0 if it was removed, -1 if the set is not loaded
+    private static final RedisScript<Long> TOGGLE = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return -1
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            if redis.call('SREM', KEYS[1], ARGV[1]) == 1 then
+                return 0
+            end
+            redis.call('SADD', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final long ttlSeconds;
+
+    @Override
+    public Optional<Set<String>> members(String key) {
+        Set<String> members = redisTemplate.opsForSet().members(key);
+        if (members == null || members.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(members.stream()
+                .filter(member -> !LOADED.equals(member))
+                .collect(Collectors.toUnmodifiableSet()));
+    }
+
+    @Override
+    public void load(String key, Collection<String> members) {
+        String[] values = new String[members.size() + 1];
+        values[0] = LOADED;
+        int i = 1;
+        for (String member : members) {
+            values[i++] = member;
+        }
+        redisTemplate.opsForSet().add(key, values);
+        redisTemplate.expire(key, ttlSeconds, TimeUnit.SECONDS);
+        log.debug("Loaded {} favorites into Valkey: {}", members.size(), key);
+    }
+
+    @Override
+    public Optional<Boolean> toggle(String key, String member) {
+        Long result = redisTemplate.execute(TOGGLE, List.of(key), member, String.valueOf(ttlSeconds));
+        if (result == null || result < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(result == 1);
+    }
+
+    @Override
+    public void remove(String key) {
+        redisTemplate.delete(key);
+    }
+}
@@ -0,0 +1,76 @@
+package com.ahmed.iptvapp.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * Valkey/Redis import leases, shared by every instance.
+ * A lease is a key holding "token:holder" with an expiry; tokens come from a counter next to it, which never
+ * expires, so they keep growing across leases. Both keys share a hash tag, so the scripts work on a cluster.
+ */
+@RequiredArgsConstructor
+public class ValkeyImportLeaseStore implements ImportLeaseStore {
+
+    private static final String LEASE_KEY = "import-lease:{%s}";
+    private static final String FENCE_KEY = "import-lease:{%s}:fence";
+
+    // Returns the lease now held, by the caller or by someone else
+    private static final RedisScript<String> ACQUIRE = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if current then
+                return current
+            end
+            local lease = redis.call('INCR', KEYS[2]) .. ':' .. ARGV[1]
+            redis.call('SET', KEYS[1], lease, 'PX', ARGV[2])
+            return lease
+            """, String.class);
+
+    // Returns 1 if the lease was still held by the caller
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public ImportLease acquire(String key, String holder, long ttlMillis) {
+        String value = redisTemplate.execute(ACQUIRE,
+                List.of(String.format(LEASE_KEY, key), String.format(FENCE_KEY, key)), holder, String.valueOf(ttlMillis));
+        if (value == null) {
+            throw new IllegalStateException("Import lease could not be read: " + key);
+        }
+        int separator = value.indexOf(':');
+        String leaseHolder = value.substring(separator + 1);
+        return new ImportLease(key, leaseHolder, Long.parseLong(value.substring(0, separator)), leaseHolder.equals(holder));
+    }
+
+    @Override
+    public boolean renew(ImportLease lease, long ttlMillis) {
+        Long renewed = redisTemplate.execute(RENEW, List.of(String.format(LEASE_KEY, lease.key())),
+                value(lease), String.valueOf(ttlMillis));
+        return renewed != null && renewed == 1;
+    }
+
+    @Override
+    public void release(ImportLease lease) {
+        redisTemplate.execute(RELEASE, List.of(String.format(LEASE_KEY, lease.key())), value(lease));
+    }
+
+    private static String value(ImportLease lease) {
+        return lease.token() + ":" + lease.holder();
+    }
+}
@@ -0,0 +1,166 @@
+package com.ahmed.iptvapp.cache;
+
+import com.ahmed.iptvapp.dto.WatchProgressDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Valkey/Redis watch histories, shared by every instance.
+ * Each user has a sorted set of items scored by when they were last watched, and a hash of their positions as
+ * JSON. The hash holds a marker field once loaded, so an empty history is told apart from an absent one. Both
+ * keys share a hash tag, so scripts can update them together on a cluster; loading a history, recording a heartbeat
+ * and reading a "continue watching" row are one script call each.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ValkeyWatchHistoryStore implements WatchHistoryStore {
+
+    private static final String LOADED = "\u0000";
+    private static final String RECENT_KEY = "watch:{%s}:recent";
+    private static final String POSITIONS_KEY = "watch:{%s}:positions";
+
+    // Positions of the most recent items, or nil if the history is not loaded
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RECENT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+                return false
+            end
+            local items = redis.call('ZREVRANGE', KEYS[1], 0, tonumber(ARGV[1]) - 1)
+            if #items == 0 then
+                return {}
+            end
+            return redis.call('HMGET', KEYS[2], unpack(items))
+            """, List.class);
+
+    // Returns 0 if the history is not loaded; otherwise records the position and trims the oldest items
+    private static final RedisScript<Long> RECORD = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+                return 0
+            end
+            redis.call('HSET', KEYS[2], ARGV[1], ARGV[2])
+            redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1])
+            local excess = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[4])
+            if excess > 0 then
+                local dropped = redis.call('ZRANGE', KEYS[1], 0, excess - 1)
+                redis.call('ZREMRANGEBYRANK', KEYS[1], 0, excess - 1)
+                redis.call('HDEL', KEYS[2], unpack(dropped))
+            end
+            redis.call('EXPIRE', KEYS[1], ARGV[5])
+            redis.call('EXPIRE', KEYS[2], ARGV[5])
+            return 1
+            """, Long.class);
+
+    // Loads the history unless it is loaded already; ARGV holds the marker field and TTL, then item, position and score triples
+    private static final RedisScript<Long> LOAD = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[2]) == 1 then
+                return 0
+            end
+            redis.call('DEL', KEYS[1])
+            for i = 3, #ARGV, 3 do
+                redis.call('HSET', KEYS[2], ARGV[i], ARGV[i + 1])
+                redis.call('ZADD', KEYS[1], ARGV[i + 2], ARGV[i])
+            end
+            redis.call('HSET', KEYS[2], ARGV[1], '1')
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[2])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final long ttlSeconds;
+
+    @Override
+    public Optional<List<WatchProgressDto>> recent(String userId, int limit) {
+        List<?> values = redisTemplate.execute(RECENT, keys(userId), String.valueOf(limit));
+        if (values == null) {
+            return Optional.empty();
+        }
+        List<WatchProgressDto> recent = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value != null) {
+                recent.add(read(value.toString()));
+            }
+        }
+        return Optional.of(recent);
+    }
+
+    @Override
+    public Optional<Map<String, WatchProgressDto>> positions(String userId, List<String> items) {
+        List<Object> fields = new ArrayList<>(items.size() + 1);
+        fields.add(LOADED);
+        fields.addAll(items);
+        List<Object> values = redisTemplate.opsForHash().multiGet(String.format(POSITIONS_KEY, userId), fields);
+        if (values == null || values.isEmpty() || values.get(0) == null) {
+            return Optional.empty();
+        }
+        Map<String, WatchProgressDto> positions = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Object value = values.get(i + 1);
+            if (value != null) {
+                positions.put(items.get(i), read(value.toString()));
+            }
+        }
+        return Optional.of(positions);
+    }
+
+    @Override
+    public boolean record(String userId, String item, WatchProgressDto progress, int maxItems) {
+        Long recorded = redisTemplate.execute(RECORD, keys(userId), item, write(progress),
+                String.valueOf(progress.getWatchedAt()), String.valueOf(maxItems), String.valueOf(ttlSeconds));
+        return recorded != null && recorded == 1;
+    }
+
+    @Override
+    public void load(String userId, Map<String, WatchProgressDto> progress) {
+        // One script, so a heartbeat recorded by another instance meanwhile is never overwritten
+        List<String> args = new ArrayList<>(2 + 3 * progress.size());
+        args.add(LOADED);
+        args.add(String.valueOf(ttlSeconds));
+        progress.forEach((item, position) -> {
+            args.add(item);
+            args.add(write(position));
+            args.add(String.valueOf(position.getWatchedAt()));
+        });
+        Long loaded = redisTemplate.execute(LOAD, keys(userId), args.toArray());
+        if (loaded != null && loaded == 1) {
+            log.debug("Loaded {} watched items of user {} into Valkey", progress.size(), userId);
+        }
+    }
+
+    @Override
+    public void remove(String userId) {
+        redisTemplate.delete(keys(userId));
+    }
+
+    private static List<String> keys(String userId) {
+        return List.of(String.format(RECENT_KEY, userId), String.format(POSITIONS_KEY, userId));
+    }
+
+    private WatchProgressDto read(String value) {
+        try {
+            return objectMapper.readValue(value, WatchProgressDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable watch progress in Valkey", e);
+        }
+    }
+
+    private String write(WatchProgressDto progress) {
+        try {
+            return objectMapper.writeValueAsString(progress);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Watch progress could not be serialized", e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.ahmed.iptvapp.cache;
+
+import com.ahmed.iptvapp.dto.WatchProgressDto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Recent watch history of users: their positions by item, ordered by when they were last watched.
+ * The history of a user is either loaded (possibly empty) or absent; absent histories are loaded from the
+ * database by the caller, so the store only ever answers for what it holds in full.
+ */
+public interface WatchHistoryStore {
+
+    /**
+     * Get the most recently watched items of a user, most recent first
+     *
+     * @param userId User
+     * @param limit Maximum number of items
+     * @return Optional containing the items if the history is loaded
+     */
+    Optional<List<WatchProgressDto>> recent(String userId, int limit);
+
+    /**
+     * Get the positions of a user in some items
+     *
+     * @param userId User
+     * @param items Item keys
+     * @return Optional containing the positions found by item key if the history is loaded
+     */
+    Optional<Map<String, WatchProgressDto>> positions(String userId, List<String> items);
+
+    /**
+     * Record a position, dropping the least recently watched items beyond the maximum
+     *
+     * @param userId User
+     * @param item Item key
+     * @param progress Position in the item
+     * @param maxItems Items kept per user
+     * @return false if the history is not loaded
+     */
+    boolean record(String userId, String item, WatchProgressDto progress, int maxItems);
+
+    /**
+     * Load the history of a user, replacing nothing if it is already loaded
+     *
+     * @param userId User
+     * @param progress Positions by item key
+     */
+    void load(String userId, Map<String, WatchProgressDto> progress);
+
+    /**
+     * Drop the history of a user
+     *
+     * @param userId User
+     */
+    void remove(String userId);
+}
@@ -1,24 +1,105 @@
 package com.ahmed.iptvapp.configuration;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
 
+    /**
+     * Background housekeeping: backfills, index builds, collection of retired generations
+     */
     @Bean(name = "taskExecutor")
     public Executor taskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(2);
         executor.setMaxPoolSize(4);
         executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("Background-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Workers running playlist imports and refreshes. The ImportScheduler hands them at most one import per
+     * worker, so the queue never fills; queueing and fairness are up to the scheduler.
+     */
+    @Bean(name = "importExecutor")
+    public Executor importExecutor(@Value("${app.import.workers:4}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
         executor.setThreadNamePrefix("PlaylistImport-");
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Writers draining parsed entries into MongoDB while an import is still downloading, one per import worker.
+     * Nothing is queued: an import finding every writer busy gets its task back and writes on its own thread.
+     */
+    @Bean(name = "importWriterExecutor")
+    public Executor importWriterExecutor(@Value("${app.import.workers:4}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(0);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("PlaylistWriter-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Background deletion of playlist content, kept small so purges do not compete with imports
+     */
+    @Bean(name = "purgeExecutor")
+    public Executor purgeExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("PlaylistPurge-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executes bulk writes of playlist content, so channels, movies and series are written in parallel
+     */
+    @Bean(name = "bulkWriteExecutor")
+    public Executor bulkWriteExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(6);
+        executor.setMaxPoolSize(12);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("BulkWriter-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool used to parse large playlists in parallel chunks.
+     * Defaults to one worker per available processor.
+     */
+    @Bean(name = "m3uParserPool", destroyMethod = "shutdown")
+    public ForkJoinPool m3uParserPool(@Value("${app.import.parallel-parse.threads:0}") int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("M3UParser-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
 }
@@ -1,8 +1,17 @@
 package com.ahmed.iptvapp.configuration;
 
 import com.ahmed.iptvapp.cache.CacheService;
+import com.ahmed.iptvapp.cache.FavoriteSetStore;
+import com.ahmed.iptvapp.cache.ImportLeaseStore;
 import com.ahmed.iptvapp.cache.InMemoryCacheService;
+import com.ahmed.iptvapp.cache.InMemoryFavoriteSetStore;
+import com.ahmed.iptvapp.cache.InMemoryImportLeaseStore;
+import com.ahmed.iptvapp.cache.InMemoryWatchHistoryStore;
 import com.ahmed.iptvapp.cache.ValkeyCacheService;
+import com.ahmed.iptvapp.cache.ValkeyFavoriteSetStore;
+import com.ahmed.iptvapp.cache.ValkeyImportLeaseStore;
+import com.ahmed.iptvapp.cache.ValkeyWatchHistoryStore;
+import com.ahmed.iptvapp.cache.WatchHistoryStore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,6 +20,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configuration for selecting the cache implementation based on application properties.
@@ -46,6 +58,66 @@ public class CacheConfig {
         }
     }
     
+    /**
+     * Creates the store of favorite sets matching the configured cache type.
+     * 
+     * @param stringRedisTemplate Template for the Valkey store, which holds plain string members
+     * @param ttlHours How long an untouched set stays in Valkey before it is loaded again
+     * @return The configured FavoriteSetStore implementation
+     */
+    @Bean
+    public FavoriteSetStore favoriteSetStore(StringRedisTemplate stringRedisTemplate,
+                                             @Value("${app.favorites.valkey-ttl-hours:24}") long ttlHours) {
+        switch (cacheType.toLowerCase()) {
+            case "valkey":
+            case "redis":
+                return new ValkeyFavoriteSetStore(stringRedisTemplate, TimeUnit.HOURS.toSeconds(ttlHours));
+            case "memory":
+            default:
+                return new InMemoryFavoriteSetStore();
+        }
+    }
+    
+    /**
+     * Creates the store of recent watch histories matching the configured cache type.
+     * 
+     * @param stringRedisTemplate Template for the Valkey store, which holds positions as JSON strings
+     * @param ttlHours How long an inactive history stays in Valkey before it is loaded again
+     * @param memoryUsers Histories the in-memory store holds before dropping the least recently active
+     * @return The configured WatchHistoryStore implementation
+     */
+    @Bean
+    public WatchHistoryStore watchHistoryStore(StringRedisTemplate stringRedisTemplate,
+                                               @Value("${app.watch.valkey-ttl-hours:24}") long ttlHours,
+                                               @Value("${app.watch.memory-users:10000}") int memoryUsers) {
+        switch (cacheType.toLowerCase()) {
+            case "valkey":
+            case "redis":
+                return new ValkeyWatchHistoryStore(stringRedisTemplate, objectMapper(), TimeUnit.HOURS.toSeconds(ttlHours));
+            case "memory":
+            default:
+                return new InMemoryWatchHistoryStore(memoryUsers);
+        }
+    }
+    
+    /**
+     * Creates the store of import leases matching the configured cache type.
+     * 
+     * @param stringRedisTemplate Template for the Valkey store, which holds leases as plain strings
+     * @return The configured ImportLeaseStore implementation
+     */
+    @Bean
+    public ImportLeaseStore importLeaseStore(StringRedisTemplate stringRedisTemplate) {
+        switch (cacheType.toLowerCase()) {
+            case "valkey":
+            case "redis":
+                return new ValkeyImportLeaseStore(stringRedisTemplate);
+            case "memory":
+            default:
+                return new InMemoryImportLeaseStore();
+        }
+    }
+    
     /**
      * Creates a bean for the ObjectMapper if it doesn't exist.
      * 
@@ -23,6 +23,9 @@ public class PaginationConfig {
     @Value("${app.pagination.series-page-size:24}")
     private int seriesPageSize;
     
+    @Value("${app.pagination.episodes-page-size:50}")
+    private int episodesPageSize;
+    
     public int validatePageSize(Integer requestedSize, int defaultSize) {
         if (requestedSize == null) {
             return defaultSize;
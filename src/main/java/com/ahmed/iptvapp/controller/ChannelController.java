@@ -1,6 +1,9 @@
 package com.ahmed.iptvapp.controller;
 
 import com.ahmed.iptvapp.configuration.PaginationConfig;
+import com.ahmed.iptvapp.dto.BatchItemDto;
+import com.ahmed.iptvapp.dto.ChannelSummaryDto;
+import com.ahmed.iptvapp.dto.FacetCountDto;
 import com.ahmed.iptvapp.dto.PageResponse;
 import com.ahmed.iptvapp.model.Channel;
 import com.ahmed.iptvapp.service.ChannelService;
@@ -19,17 +22,27 @@ public class ChannelController {
     private final ChannelService channelService;
     private final PaginationConfig paginationConfig;
     
+    /**
+     * Page through by page number, or by cursor when one is given (blank for the first page).
+     * Cursor pages can skip counting the total with includeTotal=false.
+     */
     @GetMapping
-    public ResponseEntity<PageResponse<Channel>> getChannels(
+    public ResponseEntity<PageResponse<ChannelSummaryDto>> getChannels(
             @PathVariable String playlistId,
             @RequestParam(required = false) Integer page,
             @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean includeTotal,
             Authentication authentication) {
         
         String userId = authentication.getName();
-        int validPage = page == null || page < 0 ? 0 : page;
         int validSize = paginationConfig.validatePageSize(size, paginationConfig.getChannelsPageSize());
         
+        if (cursor != null) {
+            return ResponseEntity.ok(channelService.getChannelsByPlaylistAfter(playlistId, userId, cursor, validSize, includeTotal));
+        }
+        
+        int validPage = page == null || page < 0 ? 0 : page;
         return ResponseEntity.ok(channelService.getChannelsByPlaylistPaginated(playlistId, userId, validPage, validSize));
     }
     
@@ -40,8 +53,15 @@ public class ChannelController {
         return ResponseEntity.ok(channelService.getChannelGroups(playlistId, userId));
     }
     
+    @GetMapping("/groups/counts")
+    public ResponseEntity<List<FacetCountDto>> getChannelGroupCounts(@PathVariable String playlistId,
+                                                                     Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(channelService.getChannelGroupCounts(playlistId, userId));
+    }
+    
     @GetMapping("/group/{group}")
-    public ResponseEntity<PageResponse<Channel>> getChannelsByGroup(
+    public ResponseEntity<PageResponse<ChannelSummaryDto>> getChannelsByGroup(
             @PathVariable String playlistId,
             @PathVariable String group,
             @RequestParam(required = false) Integer page,
@@ -56,7 +76,7 @@ public class ChannelController {
     }
     
     @GetMapping("/favorites")
-    public ResponseEntity<PageResponse<Channel>> getFavoriteChannels(
+    public ResponseEntity<PageResponse<ChannelSummaryDto>> getFavoriteChannels(
             @PathVariable String playlistId,
             @RequestParam(required = false) Integer page,
             @RequestParam(required = false) Integer size,
@@ -69,6 +89,16 @@ public class ChannelController {
         return ResponseEntity.ok(channelService.getFavoritesPaginated(playlistId, userId, validPage, validSize));
     }
     
+    /**
+     * Look up to app.batch.max-ids channels at once, e.g. for a row of favorites
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<List<BatchItemDto<Channel>>> getChannels(@RequestParam List<String> ids,
+                                                                   Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(channelService.getChannels(ids, userId));
+    }
+    
     @GetMapping("/{channelId}")
     public ResponseEntity<Channel> getChannel(@PathVariable String channelId,
                                             Authentication authentication) {
@@ -1,6 +1,9 @@
 package com.ahmed.iptvapp.controller;
 
 import com.ahmed.iptvapp.configuration.PaginationConfig;
+import com.ahmed.iptvapp.dto.BatchItemDto;
+import com.ahmed.iptvapp.dto.MovieSummaryDto;
+import com.ahmed.iptvapp.dto.FacetCountDto;
 import com.ahmed.iptvapp.dto.PageResponse;
 import com.ahmed.iptvapp.model.Movie;
 import com.ahmed.iptvapp.service.MovieService;
@@ -19,17 +22,27 @@ public class MovieController {
     private final MovieService movieService;
     private final PaginationConfig paginationConfig;
     
+    /**
+     * Page through by page number, or by cursor when one is given (blank for the first page).
+     * Cursor pages can skip counting the total with includeTotal=false.
+     */
     @GetMapping
-    public ResponseEntity<PageResponse<Movie>> getMovies(
+    public ResponseEntity<PageResponse<MovieSummaryDto>> getMovies(
             @PathVariable String playlistId,
             @RequestParam(required = false) Integer page,
             @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean includeTotal,
             Authentication authentication) {
         
         String userId = authentication.getName();
-        int validPage = page == null || page < 0 ? 0 : page;
         int validSize = paginationConfig.validatePageSize(size, paginationConfig.getMoviesPageSize());
         
+        if (cursor != null) {
+            return ResponseEntity.ok(movieService.getMoviesByPlaylistAfter(playlistId, userId, cursor, validSize, includeTotal));
+        }
+        
+        int validPage = page == null || page < 0 ? 0 : page;
         return ResponseEntity.ok(movieService.getMoviesByPlaylistPaginated(playlistId, userId, validPage, validSize));
     }
     
@@ -40,8 +53,15 @@ public class MovieController {
         return ResponseEntity.ok(movieService.getMovieGenres(playlistId, userId));
     }
     
+    @GetMapping("/genres/counts")
+    public ResponseEntity<List<FacetCountDto>> getMovieGenreCounts(@PathVariable String playlistId,
+                                                                   Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(movieService.getMovieGenreCounts(playlistId, userId));
+    }
+    
     @GetMapping("/genre/{genre}")
-    public ResponseEntity<PageResponse<Movie>> getMoviesByGenre(
+    public ResponseEntity<PageResponse<MovieSummaryDto>> getMoviesByGenre(
             @PathVariable String playlistId,
             @PathVariable String genre,
             @RequestParam(required = false) Integer page,
@@ -56,7 +76,7 @@ public class MovieController {
     }
     
     @GetMapping("/favorites")
-    public ResponseEntity<PageResponse<Movie>> getFavoriteMovies(
+    public ResponseEntity<PageResponse<MovieSummaryDto>> getFavoriteMovies(
             @PathVariable String playlistId,
             @RequestParam(required = false) Integer page,
             @RequestParam(required = false) Integer size,
@@ -70,7 +90,7 @@ public class MovieController {
     }
     
     @GetMapping("/search")
-    public ResponseEntity<PageResponse<Movie>> searchMovies(
+    public ResponseEntity<PageResponse<MovieSummaryDto>> searchMovies(
             @PathVariable String playlistId,
             @RequestParam String query,
             @RequestParam(required = false) Integer page,
@@ -84,6 +104,16 @@ public class MovieController {
         return ResponseEntity.ok(movieService.searchMoviesPaginated(query, playlistId, userId, validPage, validSize));
     }
     
+    /**
+     * Look up to app.batch.max-ids movies at once, e.g. for a row of favorites
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<List<BatchItemDto<Movie>>> getMovies(@RequestParam List<String> ids,
+                                                               Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(movieService.getMovies(ids, userId));
+    }
+    
     @GetMapping("/{movieId}")
     public ResponseEntity<Movie> getMovie(@PathVariable String movieId,
                                         Authentication authentication) {
@@ -1,8 +1,8 @@
 package com.ahmed.iptvapp.controller;
 
+import com.ahmed.iptvapp.dto.ImportQueueStatsDto;
 import com.ahmed.iptvapp.dto.PlaylistDto;
 import com.ahmed.iptvapp.dto.PlaylistImportResponse;
-import com.ahmed.iptvapp.service.AsyncTaskTrackerService;
 import com.ahmed.iptvapp.service.PlaylistService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -18,7 +18,6 @@ import java.util.List;
 public class PlaylistController {
 
     private final PlaylistService playlistService;
-    private final AsyncTaskTrackerService taskTrackerService;
     
     @GetMapping
     public ResponseEntity<List<PlaylistDto>> getUserPlaylists(Authentication authentication) {
@@ -50,13 +49,9 @@ public class PlaylistController {
     @PostMapping("/async")
     public ResponseEntity<PlaylistImportResponse> createFromUrlAsync(@RequestParam String url, Authentication authentication) {
         String userId = authentication.getName();
-        String taskId = taskTrackerService.createTask();
         
-        // Start async task
-        playlistService.createFromUrlAsync(url, userId, taskId);
-        
-        // Return initial response with task ID
-        PlaylistImportResponse response = PlaylistImportResponse.pending(taskId);
+        // Start async task, or join the one already importing this URL
+        PlaylistImportResponse response = playlistService.createFromUrlAsync(url, userId);
         return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
     }
     
@@ -70,6 +65,14 @@ public class PlaylistController {
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    /**
+     * Queue depth, waits and rejections of playlist imports
+     */
+    @GetMapping("/import-queue")
+    public ResponseEntity<ImportQueueStatsDto> getImportQueueStats() {
+        return ResponseEntity.ok(playlistService.getImportQueueStats());
+    }
+    
     @PutMapping("/{playlistId}")
     public ResponseEntity<PlaylistDto> updatePlaylist(@PathVariable String playlistId,
                                                     @RequestBody PlaylistDto playlistDto,
@@ -97,21 +100,20 @@ public class PlaylistController {
     public ResponseEntity<PlaylistImportResponse> refreshPlaylistAsync(@PathVariable String playlistId, 
                                                                      Authentication authentication) {
         String userId = authentication.getName();
-        String taskId = taskTrackerService.createTask();
-        
-        // Start async task
-        playlistService.refreshPlaylistAsync(playlistId, userId, taskId);
         
-        // Return initial response with task ID
-        PlaylistImportResponse response = PlaylistImportResponse.pending(taskId);
+        // Start async task, or join the one already refreshing this playlist
+        PlaylistImportResponse response = playlistService.refreshPlaylistAsync(playlistId, userId);
         return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
     }
     
+    /**
+     * Delete a playlist; its content is purged asynchronously and the returned task reports the progress
+     */
     @DeleteMapping("/{playlistId}")
-    public ResponseEntity<Void> deletePlaylist(@PathVariable String playlistId, 
-                                             Authentication authentication) {
+    public ResponseEntity<PlaylistImportResponse> deletePlaylist(@PathVariable String playlistId, 
+                                                               Authentication authentication) {
         String userId = authentication.getName();
-        playlistService.deletePlaylist(playlistId, userId);
-        return ResponseEntity.noContent().build();
+        String taskId = playlistService.deletePlaylist(playlistId, userId);
+        return new ResponseEntity<>(PlaylistImportResponse.pending(taskId), HttpStatus.ACCEPTED);
     }
 }
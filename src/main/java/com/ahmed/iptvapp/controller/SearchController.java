@@ -0,0 +1,59 @@
+package com.ahmed.iptvapp.controller;
+
+import com.ahmed.iptvapp.configuration.PaginationConfig;
+import com.ahmed.iptvapp.dto.PageResponse;
+import com.ahmed.iptvapp.dto.SearchHitDto;
+import com.ahmed.iptvapp.dto.SuggestionDto;
+import com.ahmed.iptvapp.service.SearchService;
+import com.ahmed.iptvapp.service.SuggestionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/playlists/{playlistId}")
+@RequiredArgsConstructor
+public class SearchController {
+
+    private final SearchService searchService;
+    private final SuggestionService suggestionService;
+    private final PaginationConfig paginationConfig;
+    
+    /**
+     * Search the channels, movies and series of a playlist, best matches first.
+     * The type parameter restricts the search to CHANNEL, MOVIE or SERIES.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<PageResponse<SearchHitDto>> search(
+            @PathVariable String playlistId,
+            @RequestParam("q") String query,
+            @RequestParam(required = false) SearchHitDto.Type type,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size,
+            Authentication authentication) {
+        
+        String userId = authentication.getName();
+        int validPage = page == null || page < 0 ? 0 : page;
+        int validSize = paginationConfig.validatePageSize(size, paginationConfig.getDefaultPageSize());
+        
+        return ResponseEntity.ok(searchService.search(playlistId, query, type, userId, validPage, validSize));
+    }
+    
+    /**
+     * Complete a typed prefix with titles of the playlist; cheap enough to call on every keystroke
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDto>> suggest(
+            @PathVariable String playlistId,
+            @RequestParam("q") String prefix,
+            @RequestParam(required = false) SearchHitDto.Type type,
+            @RequestParam(defaultValue = "10") int limit,
+            Authentication authentication) {
+        
+        String userId = authentication.getName();
+        return ResponseEntity.ok(suggestionService.suggest(playlistId, prefix, type, limit, userId));
+    }
+}
@@ -1,6 +1,8 @@
 package com.ahmed.iptvapp.controller;
 
 import com.ahmed.iptvapp.configuration.PaginationConfig;
+import com.ahmed.iptvapp.dto.SeriesSummaryDto;
+import com.ahmed.iptvapp.dto.FacetCountDto;
 import com.ahmed.iptvapp.dto.PageResponse;
 import com.ahmed.iptvapp.model.Episode;
 import com.ahmed.iptvapp.model.Series;
@@ -20,17 +22,27 @@ public class SeriesController {
     private final SeriesService seriesService;
     private final PaginationConfig paginationConfig;
     
+    /**
+     * Page through by page number, or by cursor when one is given (blank for the first page).
+     * Cursor pages can skip counting the total with includeTotal=false.
+     */
     @GetMapping
-    public ResponseEntity<PageResponse<Series>> getAllSeries(
+    public ResponseEntity<PageResponse<SeriesSummaryDto>> getAllSeries(
             @PathVariable String playlistId,
             @RequestParam(required = false) Integer page,
             @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "true") boolean includeTotal,
             Authentication authentication) {
         
         String userId = authentication.getName();
-        int validPage = page == null || page < 0 ? 0 : page;
         int validSize = paginationConfig.validatePageSize(size, paginationConfig.getSeriesPageSize());
         
+        if (cursor != null) {
+            return ResponseEntity.ok(seriesService.getSeriesByPlaylistAfter(playlistId, userId, cursor, validSize, includeTotal));
+        }
+        
+        int validPage = page == null || page < 0 ? 0 : page;
         return ResponseEntity.ok(seriesService.getSeriesByPlaylistPaginated(playlistId, userId, validPage, validSize));
     }
     
@@ -41,8 +53,15 @@ public class SeriesController {
         return ResponseEntity.ok(seriesService.getSeriesGenres(playlistId, userId));
     }
     
+    @GetMapping("/genres/counts")
+    public ResponseEntity<List<FacetCountDto>> getSeriesGenreCounts(@PathVariable String playlistId,
+                                                                    Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(seriesService.getSeriesGenreCounts(playlistId, userId));
+    }
+    
     @GetMapping("/genre/{genre}")
-    public ResponseEntity<PageResponse<Series>> getSeriesByGenre(
+    public ResponseEntity<PageResponse<SeriesSummaryDto>> getSeriesByGenre(
             @PathVariable String playlistId,
             @PathVariable String genre,
             @RequestParam(required = false) Integer page,
@@ -57,7 +76,7 @@ public class SeriesController {
     }
     
     @GetMapping("/favorites")
-    public ResponseEntity<PageResponse<Series>> getFavoriteSeries(
+    public ResponseEntity<PageResponse<SeriesSummaryDto>> getFavoriteSeries(
             @PathVariable String playlistId,
             @RequestParam(required = false) Integer page,
             @RequestParam(required = false) Integer size,
@@ -71,7 +90,7 @@ public class SeriesController {
     }
     
     @GetMapping("/search")
-    public ResponseEntity<PageResponse<Series>> searchSeries(
+    public ResponseEntity<PageResponse<SeriesSummaryDto>> searchSeries(
             @PathVariable String playlistId,
             @RequestParam String query,
             @RequestParam(required = false) Integer page,
@@ -116,6 +135,22 @@ public class SeriesController {
         return ResponseEntity.ok(seriesService.getEpisodes(seriesId, userId));
     }
     
+    /**
+     * Page through the episodes of a series, or of one of its seasons, in season and episode order
+     */
+    @GetMapping("/{seriesId}/episodes/page")
+    public ResponseEntity<PageResponse<Episode>> getEpisodesPage(@PathVariable String seriesId,
+                                                               @RequestParam(required = false) Integer season,
+                                                               @RequestParam(required = false) Integer page,
+                                                               @RequestParam(required = false) Integer size,
+                                                               Authentication authentication) {
+        String userId = authentication.getName();
+        int validPage = page == null || page < 0 ? 0 : page;
+        int validSize = paginationConfig.validatePageSize(size, paginationConfig.getEpisodesPageSize());
+        
+        return ResponseEntity.ok(seriesService.getEpisodesPaginated(seriesId, season, userId, validPage, validSize));
+    }
+    
     @GetMapping("/{seriesId}/season/{seasonNumber}")
     public ResponseEntity<List<Episode>> getSeasonEpisodes(@PathVariable String seriesId,
                                                         @PathVariable int seasonNumber,
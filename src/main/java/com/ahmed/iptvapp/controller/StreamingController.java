@@ -1,5 +1,7 @@
 package com.ahmed.iptvapp.controller;
 
+import com.ahmed.iptvapp.dto.BatchItemDto;
+import com.ahmed.iptvapp.dto.StreamInfoDto;
 import com.ahmed.iptvapp.service.StreamingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,6 +11,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/stream")
 @RequiredArgsConstructor
@@ -89,7 +93,7 @@ public class StreamingController {
      * Get channel stream info (URL, type, etc.)
      */
     @GetMapping("/info/channel/{channelId}")
-    public ResponseEntity<StreamInfo> getChannelStreamInfo(@PathVariable String channelId,
+    public ResponseEntity<StreamInfoDto> getChannelStreamInfo(@PathVariable String channelId,
                                                         Authentication authentication) {
         try {
             String userId = authentication.getName();
@@ -97,7 +101,7 @@ public class StreamingController {
             String streamType = streamingService.detectStreamType(streamUrl);
             String proxyUrl = streamingService.getProxiedChannelStreamUrl(channelId, userId);
             
-            return ResponseEntity.ok(new StreamInfo(streamUrl, streamType, proxyUrl));
+            return ResponseEntity.ok(new StreamInfoDto(streamUrl, streamType, proxyUrl));
         } catch (Exception e) {
             log.error("Error getting channel stream info", e);
             return ResponseEntity.internalServerError().build();
@@ -108,7 +112,7 @@ public class StreamingController {
      * Get movie stream info
      */
     @GetMapping("/info/movie/{movieId}")
-    public ResponseEntity<StreamInfo> getMovieStreamInfo(@PathVariable String movieId,
+    public ResponseEntity<StreamInfoDto> getMovieStreamInfo(@PathVariable String movieId,
                                                       Authentication authentication) {
         try {
             String userId = authentication.getName();
@@ -116,18 +120,38 @@ public class StreamingController {
             String streamType = streamingService.detectStreamType(streamUrl);
             String proxyUrl = streamingService.getProxiedMovieStreamUrl(movieId, userId);
             
-            return ResponseEntity.ok(new StreamInfo(streamUrl, streamType, proxyUrl));
+            return ResponseEntity.ok(new StreamInfoDto(streamUrl, streamType, proxyUrl));
         } catch (Exception e) {
             log.error("Error getting movie stream info", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    /**
+     * Get the stream info of many channels at once, in request order, with not-found markers
+     */
+    @GetMapping("/info/channels")
+    public ResponseEntity<List<BatchItemDto<StreamInfoDto>>> getChannelStreamInfos(@RequestParam List<String> ids,
+                                                                                  Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(streamingService.getChannelStreamInfos(ids, userId));
+    }
+
+    /**
+     * Get the stream info of many movies at once, in request order, with not-found markers
+     */
+    @GetMapping("/info/movies")
+    public ResponseEntity<List<BatchItemDto<StreamInfoDto>>> getMovieStreamInfos(@RequestParam List<String> ids,
+                                                                                Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(streamingService.getMovieStreamInfos(ids, userId));
+    }
+
     /**
      * Get episode stream info
      */
     @GetMapping("/info/series/{seriesId}/season/{seasonNumber}/episode/{episodeNumber}")
-    public ResponseEntity<StreamInfo> getEpisodeStreamInfo(@PathVariable String seriesId,
+    public ResponseEntity<StreamInfoDto> getEpisodeStreamInfo(@PathVariable String seriesId,
                                                         @PathVariable int seasonNumber,
                                                         @PathVariable int episodeNumber,
                                                         Authentication authentication) {
@@ -137,37 +161,10 @@ public class StreamingController {
             String streamType = streamingService.detectStreamType(streamUrl);
             String proxyUrl = streamingService.getProxiedEpisodeStreamUrl(seriesId, seasonNumber, episodeNumber, userId);
             
-            return ResponseEntity.ok(new StreamInfo(streamUrl, streamType, proxyUrl));
+            return ResponseEntity.ok(new StreamInfoDto(streamUrl, streamType, proxyUrl));
         } catch (Exception e) {
             log.error("Error getting episode stream info", e);
             return ResponseEntity.internalServerError().build();
         }
     }
-
-    /**
-     * Stream info class for returning stream details
-     */
-    private static class StreamInfo {
-        private final String directUrl;
-        private final String streamType;
-        private final String proxyUrl;
-
-        public StreamInfo(String directUrl, String streamType, String proxyUrl) {
-            this.directUrl = directUrl;
-            this.streamType = streamType;
-            this.proxyUrl = proxyUrl;
-        }
-
-        public String getDirectUrl() {
-            return directUrl;
-        }
-
-        public String getStreamType() {
-            return streamType;
-        }
-
-        public String getProxyUrl() {
-            return proxyUrl;
-        }
-    }
-}
\ No newline at end of file
+}
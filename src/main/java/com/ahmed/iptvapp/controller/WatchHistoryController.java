@@ -0,0 +1,73 @@
+package com.ahmed.iptvapp.controller;
+
+import com.ahmed.iptvapp.dto.WatchHeartbeatDto;
+import com.ahmed.iptvapp.dto.WatchProgressDto;
+import com.ahmed.iptvapp.service.WatchHistoryService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/watch")
+@RequiredArgsConstructor
+public class WatchHistoryController {
+
+    private static final int MAX_LIMIT = 50;
+
+    private final WatchHistoryService watchHistoryService;
+
+    /**
+     * Heartbeat of a player, sent every few seconds while playing
+     */
+    @PostMapping("/progress")
+    public ResponseEntity<Void> recordProgress(@Valid @RequestBody WatchHeartbeatDto heartbeat,
+                                               Authentication authentication) {
+        String userId = authentication.getName();
+        watchHistoryService.recordProgress(userId, heartbeat);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/continue")
+    public ResponseEntity<List<WatchProgressDto>> getContinueWatching(
+            @RequestParam(defaultValue = "20") int limit,
+            Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(watchHistoryService.getContinueWatching(userId, validLimit(limit)));
+    }
+
+    @GetMapping("/history")
+    public ResponseEntity<List<WatchProgressDto>> getHistory(
+            @RequestParam(defaultValue = "20") int limit,
+            Authentication authentication) {
+        String userId = authentication.getName();
+        return ResponseEntity.ok(watchHistoryService.getHistory(userId, validLimit(limit)));
+    }
+
+    @GetMapping("/progress/movie/{movieId}")
+    public ResponseEntity<WatchProgressDto> getMovieProgress(@PathVariable String movieId,
+                                                             Authentication authentication) {
+        String userId = authentication.getName();
+        return watchHistoryService.getMovieProgress(movieId, userId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/progress/series/{seriesId}/season/{seasonNumber}/episode/{episodeNumber}")
+    public ResponseEntity<WatchProgressDto> getEpisodeProgress(@PathVariable String seriesId,
+                                                               @PathVariable int seasonNumber,
+                                                               @PathVariable int episodeNumber,
+                                                               Authentication authentication) {
+        String userId = authentication.getName();
+        return watchHistoryService.getEpisodeProgress(seriesId, seasonNumber, episodeNumber, userId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private static int validLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -0,0 +1,30 @@
+package com.ahmed.iptvapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One requested id of a batch lookup: the item, or found=false if it does not exist or belongs to someone else
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemDto<T> implements Serializable {
+    
+    private String id;
+    private boolean found;
+    private T item;
+    
+    public static <T> BatchItemDto<T> found(String id, T item) {
+        return new BatchItemDto<>(id, true, item);
+    }
+    
+    public static <T> BatchItemDto<T> notFound(String id) {
+        return new BatchItemDto<>(id, false, null);
+    }
+}
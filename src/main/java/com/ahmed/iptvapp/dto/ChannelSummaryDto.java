@@ -0,0 +1,30 @@
+package com.ahmed.iptvapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Channel as shown in listings, read with a field projection; the detail view returns the full channel
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChannelSummaryDto implements Serializable {
+    
+    private String id;
+    private String name;
+    private String group;
+    private String logoUrl;
+    private String streamUrl;
+    private Boolean favorite;
+    
+    // Identity of the favorite, matched against the owner's favorites
+    @JsonIgnore
+    private String fingerprint;
+}
@@ -0,0 +1,21 @@
+package com.ahmed.iptvapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * A channel group or a genre, with the number of items in it
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetCountDto implements Serializable {
+    
+    private String value;
+    private long count;
+}
@@ -0,0 +1,28 @@
+package com.ahmed.iptvapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the import scheduler: queue depth, running imports, waits and rejections since startup
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportQueueStatsDto {
+    private int workers;
+    private int running;
+    private int queuedInteractive;
+    private int queuedBackground;
+    // Users with imports running or waiting
+    private int activeUsers;
+    private long started;
+    private long rejected;
+    private long averageWaitMillis;
+    private long maxWaitMillis;
+    // Wait so far of the longest waiting import, 0 if none waits
+    private long oldestWaitMillis;
+}
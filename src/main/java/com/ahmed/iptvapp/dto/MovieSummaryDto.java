@@ -0,0 +1,32 @@
+package com.ahmed.iptvapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Movie as shown in listings, read with a field projection; the detail view returns the full movie
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieSummaryDto implements Serializable {
+    
+    private String id;
+    private String title;
+    private String genre;
+    private String thumbnailUrl;
+    private String streamUrl;
+    private String releaseYear;
+    private Integer duration;
+    private Boolean favorite;
+    
+    // Identity of the favorite, matched against the owner's favorites
+    @JsonIgnore
+    private String fingerprint;
+}
@@ -19,6 +19,8 @@ public class PageResponse<T> {
     private int totalPages;
     private boolean first;
     private boolean last;
+    // Continues the listing after this page; null on the last page
+    private String nextCursor;
     
     public static <T> PageResponse<T> of(List<T> content, int page, int size, long totalElements) {
         int totalPages = size > 0 ? (int) Math.ceil((double) totalElements / size) : 0;
@@ -33,4 +35,24 @@ public class PageResponse<T> {
                 .last(page >= totalPages - 1)
                 .build();
     }
+    
+    /**
+     * Page of a cursor listing: the page number is unknown (-1), and so are the totals unless counted
+     */
+    public static <T> PageResponse<T> ofCursor(List<T> content, boolean first, int size, Long totalElements,
+                                               String nextCursor) {
+        long total = totalElements == null ? -1 : totalElements;
+        int totalPages = totalElements == null || size <= 0 ? -1 : (int) Math.ceil((double) total / size);
+        
+        return PageResponse.<T>builder()
+                .content(content)
+                .page(-1)
+                .size(size)
+                .totalElements(total)
+                .totalPages(totalPages)
+                .first(first)
+                .last(nextCursor == null)
+                .nextCursor(nextCursor)
+                .build();
+    }
 }
@@ -16,6 +16,7 @@ public class PlaylistImportResponse {
     private String playlistId;
     private String status;  // PENDING, PROCESSING, COMPLETED, FAILED
     private Integer progress;  // 0-100 percent
+    private Long processedEntries;  // entries persisted so far
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private String errorMessage;
@@ -42,6 +43,17 @@ public class PlaylistImportResponse {
                 .build();
     }
     
+    public static PlaylistImportResponse completed(String taskId, String playlistId, long processedEntries) {
+        return PlaylistImportResponse.builder()
+                .taskId(taskId)
+                .playlistId(playlistId)
+                .status("COMPLETED")
+                .progress(100)
+                .processedEntries(processedEntries)
+                .endTime(LocalDateTime.now())
+                .build();
+    }
+    
     public static PlaylistImportResponse failed(String taskId, String error) {
         return PlaylistImportResponse.builder()
                 .taskId(taskId)
@@ -61,4 +73,14 @@ public class PlaylistImportResponse {
                 .startTime(LocalDateTime.now())
                 .build();
     }
+    
+    public static PlaylistImportResponse processing(String taskId, int progress, long processedEntries) {
+        return PlaylistImportResponse.builder()
+                .taskId(taskId)
+                .status("PROCESSING")
+                .progress(progress)
+                .processedEntries(processedEntries)
+                .startTime(LocalDateTime.now())
+                .build();
+    }
 }
@@ -0,0 +1,31 @@
+package com.ahmed.iptvapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * A channel, movie or series matching a search, with its relevance
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHitDto implements Serializable {
+    
+    public enum Type {
+        CHANNEL, MOVIE, SERIES
+    }
+    
+    private Type type;
+    private String id;
+    private String title;
+    // Group of a channel, genre of a movie or series
+    private String category;
+    private String imageUrl;
+    private Boolean favorite;
+    private double score;
+}
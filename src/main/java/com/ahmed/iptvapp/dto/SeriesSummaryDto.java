@@ -0,0 +1,28 @@
+package com.ahmed.iptvapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Series as shown in listings: episode count and seasons are computed by the projection,
+ * so the embedded episodes never leave the database
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeriesSummaryDto implements Serializable {
+    
+    private String id;
+    private String title;
+    private String genre;
+    private String thumbnailUrl;
+    private Boolean favorite;
+    private Integer episodeCount;
+    private List<Integer> seasons;
+}
@@ -0,0 +1,22 @@
+package com.ahmed.iptvapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Stream details of a channel, movie or episode: its source URL, the kind of stream, and our proxy URL for it
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamInfoDto implements Serializable {
+    
+    private String directUrl;
+    private String streamType;
+    private String proxyUrl;
+}
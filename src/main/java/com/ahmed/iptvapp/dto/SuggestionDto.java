@@ -0,0 +1,22 @@
+package com.ahmed.iptvapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * A channel, movie or series completing a typed prefix
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDto implements Serializable {
+    
+    private SearchHitDto.Type type;
+    private String id;
+    private String title;
+}
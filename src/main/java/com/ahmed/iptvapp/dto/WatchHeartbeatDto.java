@@ -0,0 +1,46 @@
+package com.ahmed.iptvapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Playback position a player reports every few seconds
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WatchHeartbeatDto {
+    
+    @NotNull(message = "Type is required")
+    private WatchProgressDto.Type type;
+    
+    // Movie id, or series id for episodes
+    @NotBlank(message = "Content id is required")
+    private String contentId;
+    
+    private Integer seasonNumber;
+    
+    private Integer episodeNumber;
+    
+    @NotNull(message = "Position is required")
+    @PositiveOrZero(message = "Position cannot be negative")
+    private Long positionSeconds;
+    
+    // Unknown for live-like streams
+    @PositiveOrZero(message = "Duration cannot be negative")
+    private Long durationSeconds;
+    
+    @JsonIgnore
+    @AssertTrue(message = "Season and episode numbers are required for episodes")
+    public boolean isEpisodeIdentified() {
+        return type != WatchProgressDto.Type.EPISODE || (seasonNumber != null && episodeNumber != null);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ahmed.iptvapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Where a user stopped in a movie or episode, with what a "continue watching" row shows of it
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class WatchProgressDto implements Serializable {
+    
+    public enum Type {
+        MOVIE,
+        EPISODE
+    }
+    
+    private Type type;
+    // Movie id, or series id for episodes
+    private String contentId;
+    private Integer seasonNumber;
+    private Integer episodeNumber;
+    private String playlistId;
+    private String title;
+    private String imageUrl;
+    private long positionSeconds;
+    private Long durationSeconds;
+    private boolean finished;
+    // Epoch milliseconds of the last heartbeat
+    private long watchedAt;
+}
@@ -0,0 +1,11 @@
+package com.ahmed.iptvapp.exception;
+
+/**
+ * Exception thrown when a batch lookup asks for more ids than allowed
+ */
+public class BatchTooLargeException extends RuntimeException {
+    
+    public BatchTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -129,6 +129,59 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(body, HttpStatus.TOO_MANY_REQUESTS);
     }
     
+    /**
+     * Handler for pagination cursors that were tampered with or come from another listing
+     */
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Object> handleInvalidCursorException(
+            InvalidCursorException ex, HttpServletRequest request) {
+        
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.BAD_REQUEST.value());
+        body.put("error", "Bad Request");
+        body.put("message", ex.getMessage());
+        body.put("path", request.getRequestURI());
+        
+        return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+    }
+    
+    /**
+     * Handler for batch lookups over the size limit
+     */
+    @ExceptionHandler(BatchTooLargeException.class)
+    public ResponseEntity<Object> handleBatchTooLargeException(
+            BatchTooLargeException ex, HttpServletRequest request) {
+        
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.BAD_REQUEST.value());
+        body.put("error", "Bad Request");
+        body.put("message", ex.getMessage());
+        body.put("path", request.getRequestURI());
+        
+        return new ResponseEntity<>(body, HttpStatus.BAD_REQUEST);
+    }
+    
+    /**
+     * Handler for synchronous imports of a playlist or URL that is already being imported; the running task
+     * can be followed instead
+     */
+    @ExceptionHandler(ImportInProgressException.class)
+    public ResponseEntity<Object> handleImportInProgressException(
+            ImportInProgressException ex, HttpServletRequest request) {
+        
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", HttpStatus.CONFLICT.value());
+        body.put("error", "Conflict");
+        body.put("message", ex.getMessage());
+        body.put("taskId", ex.getTaskId());
+        body.put("path", request.getRequestURI());
+        
+        return new ResponseEntity<>(body, HttpStatus.CONFLICT);
+    }
+    
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Object> handleAllExceptions(
             Exception ex, HttpServletRequest request) {
@@ -0,0 +1,18 @@
+package com.ahmed.iptvapp.exception;
+
+/**
+ * Exception thrown when a synchronous import or refresh finds the same one already running
+ */
+public class ImportInProgressException extends RuntimeException {
+    
+    private final String taskId;
+    
+    public ImportInProgressException(String message, String taskId) {
+        super(message);
+        this.taskId = taskId;
+    }
+    
+    public String getTaskId() {
+        return taskId;
+    }
+}
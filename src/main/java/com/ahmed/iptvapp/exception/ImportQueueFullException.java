@@ -0,0 +1,12 @@
+package com.ahmed.iptvapp.exception;
+
+/**
+ * Exception thrown when an import cannot be queued, because the user or the server has too many waiting;
+ * answered like a rate limit, with a Retry-After
+ */
+public class ImportQueueFullException extends RateLimitExceededException {
+    
+    public ImportQueueFullException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
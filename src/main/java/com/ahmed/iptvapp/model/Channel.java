@@ -5,9 +5,11 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -30,6 +32,25 @@ public class Channel {
     
     private String playlistId;
     
+    // Owner of the playlist, so an item is authorized by the query that loads it
+    private String ownerId;
+    
+    // Normalized tokens of the name, matched by prefix for search
+    private List<String> searchTokens;
+    
+    // Stable identity across refreshes (playlist + stream URL + title)
+    private String fingerprint;
+    
+    // Hash of the fields a refresh may change
+    private String contentHash;
+    
+    // Generation that wrote this document, and the one that replaced it, if any
+    private Long generation;
+    
+    private Long retiredGeneration;
+    
+    // Whether the owner marked it, filled in from FavoriteService; favorites are not stored on the content
+    @Transient
     private Boolean favorite;
     
     @Builder.Default
@@ -48,6 +48,16 @@ public class Episode {
      */
     private String thumbnailUrl;
 
+    /**
+     * Stable identity across refreshes (playlist + stream URL + title)
+     */
+    private String fingerprint;
+
+    /**
+     * Hash of the fields a refresh may change
+     */
+    private String contentHash;
+
     /**
      * Length of the episode in minutes
      */
@@ -0,0 +1,36 @@
+package com.ahmed.iptvapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Favorites of a user in one playlist and content type, written behind the favorite set store
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "favorites")
+public class FavoriteSet {
+    
+    // userId:playlistId:type
+    @Id
+    private String id;
+    
+    private String userId;
+    
+    private String playlistId;
+    
+    private String type;
+    
+    // Fingerprints of channels and movies, titles of series: they survive refreshes, unlike document ids
+    @Builder.Default
+    private List<String> keys = new ArrayList<>();
+}
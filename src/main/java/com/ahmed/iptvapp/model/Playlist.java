@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -29,12 +30,16 @@ public class Playlist {
     
     private String content;
     
+    // Content lives in its own collections; these are only filled by in-memory parses
+    @Transient
     @Builder.Default
     private List<Channel> channels = new ArrayList<>();
     
+    @Transient
     @Builder.Default
     private List<Movie> movies = new ArrayList<>();
     
+    @Transient
     @Builder.Default
     private List<Series> series = new ArrayList<>();
     
@@ -46,5 +51,30 @@ public class Playlist {
     
     private LocalDateTime lastRefreshed;
     
+    // Validators from the last fetch, used for conditional refreshes
+    private String etag;
+    
+    private String lastModified;
+    
+    private String contentHash;
+    
+    // Generation of content readers see; content is written under a new generation, then this pointer flips
+    private Long currentGeneration;
+    
+    // Generation a refresh is writing, if one is running
+    private Long pendingGeneration;
+    
+    private LocalDateTime pendingSince;
+    
+    // Fencing token of the import lease the pending generation is written under
+    private Long pendingFence;
+    
+    // Content counts of the current generation, written together with the generation pointer
+    private Long channelsCount;
+    
+    private Long moviesCount;
+    
+    private Long seriesCount;
+    
     private Boolean active;
 }
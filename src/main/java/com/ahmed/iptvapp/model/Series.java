@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -30,11 +31,31 @@ public class Series {
     
     private String playlistId;
     
+    // Owner of the playlist, so an item is authorized by the query that loads it
+    private String ownerId;
+    
+    // Normalized tokens of the title, matched by prefix for search
+    private List<String> searchTokens;
+    
+    // Hash of the fields a refresh may change
+    private String contentHash;
+    
+    // Generation that wrote this document, and the one that replaced it, if any
+    private Long generation;
+    
+    private Long retiredGeneration;
+    
     private String description;
     
+    // Kept in season and episode order by the imports
     @Builder.Default
     private List<Episode> episodes = new ArrayList<>();
     
+    // Distinct season numbers of the episodes, maintained as they are written; missing on older documents
+    private List<Integer> seasons;
+    
+    // Whether the owner marked it, filled in from FavoriteService; favorites are not stored on the content
+    @Transient
     private Boolean favorite;
     
     @Builder.Default
@@ -0,0 +1,49 @@
+package com.ahmed.iptvapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Last known position of a user in a movie or episode, written behind the watch history store
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "watch_history")
+public class WatchProgress {
+    
+    // userId:item, where item is movie:<id> or episode:<seriesId>:<season>:<episode>
+    @Id
+    private String id;
+    
+    private String userId;
+    
+    private String playlistId;
+    
+    private String type;
+    
+    private String contentId;
+    
+    private Integer seasonNumber;
+    
+    private Integer episodeNumber;
+    
+    private String title;
+    
+    private String imageUrl;
+    
+    private long positionSeconds;
+    
+    private Long durationSeconds;
+    
+    private boolean finished;
+    
+    private Instant watchedAt;
+}
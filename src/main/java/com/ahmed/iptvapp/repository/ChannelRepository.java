@@ -13,5 +13,4 @@ public interface ChannelRepository extends MongoRepository<Channel, String> {
     
     List<Channel> findByPlaylistIdAndGroup(String playlistId, String group);
     
-    List<Channel> findByPlaylistIdAndFavorite(String playlistId, Boolean favorite);
 }
@@ -11,9 +11,4 @@ public interface MovieRepository extends MongoRepository<Movie, String> {
     
     List<Movie> findByPlaylistId(String playlistId);
     
-    List<Movie> findByGenre(String genre);
-    
-    List<Movie> findByPlaylistIdAndFavorite(String playlistId, Boolean favorite);
-    
-    List<Movie> findByTitleContainingIgnoreCase(String title);
 }
@@ -11,9 +11,4 @@ public interface SeriesRepository extends MongoRepository<Series, String> {
     
     List<Series> findByPlaylistId(String playlistId);
     
-    List<Series> findByGenre(String genre);
-    
-    List<Series> findByPlaylistIdAndFavorite(String playlistId, Boolean favorite);
-    
-    List<Series> findByTitleContainingIgnoreCase(String title);
 }
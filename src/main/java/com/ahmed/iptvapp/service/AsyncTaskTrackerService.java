@@ -1,18 +1,28 @@
 package com.ahmed.iptvapp.service;
 
+import com.ahmed.iptvapp.cache.CacheService;
 import com.ahmed.iptvapp.dto.PlaylistImportResponse;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Service to track the status of asynchronous tasks
+ * Service to track the status of asynchronous tasks.
+ * Statuses are written through to the cache, so a task running on one instance can be followed from any other.
  */
 @Service
+@RequiredArgsConstructor
 public class AsyncTaskTrackerService {
     
+    private static final String TASK_CACHE_KEY = "task:%s";
+    private static final long TASK_TTL_HOURS = 24;
+    
+    private final CacheService cacheService;
+    
     private final Map<String, PlaylistImportResponse> taskStatusMap = new ConcurrentHashMap<>();
     
     /**
@@ -20,8 +30,7 @@ public class AsyncTaskTrackerService {
      */
     public String createTask() {
         String taskId = generateTaskId();
-        PlaylistImportResponse response = PlaylistImportResponse.pending(taskId);
-        taskStatusMap.put(taskId, response);
+        updateTaskStatus(taskId, PlaylistImportResponse.pending(taskId));
         return taskId;
     }
     
@@ -30,13 +39,26 @@ public class AsyncTaskTrackerService {
      */
     public void updateTaskStatus(String taskId, PlaylistImportResponse status) {
         taskStatusMap.put(taskId, status);
+        cacheService.put(String.format(TASK_CACHE_KEY, taskId), status, TASK_TTL_HOURS, TimeUnit.HOURS);
     }
     
     /**
-     * Get the status of a task
+     * Get the status of a task, tracked here or by another instance
      */
     public Optional<PlaylistImportResponse> getTaskStatus(String taskId) {
-        return Optional.ofNullable(taskStatusMap.get(taskId));
+        PlaylistImportResponse status = taskStatusMap.get(taskId);
+        if (status != null) {
+            return Optional.of(status);
+        }
+        return cacheService.get(String.format(TASK_CACHE_KEY, taskId), PlaylistImportResponse.class);
+    }
+    
+    /**
+     * Forget a task that was never started
+     */
+    public void removeTask(String taskId) {
+        taskStatusMap.remove(taskId);
+        cacheService.remove(String.format(TASK_CACHE_KEY, taskId));
     }
     
     /**
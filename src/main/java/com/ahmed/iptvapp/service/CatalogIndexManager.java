@@ -0,0 +1,240 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.FavoriteSet;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Playlist;
+import com.ahmed.iptvapp.model.Series;
+import com.ahmed.iptvapp.model.WatchProgress;
+import com.mongodb.ExplainVerbosity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Indexes of the catalog collections, declared next to the query shapes they serve.
+ * At startup the indexes are created, then the canonical queries of the services are explained: a plan that
+ * scans the collection or sorts in memory means a query no longer matches its index, which is logged loudly
+ * or fails the startup, depending on app.indexes.plan-check (off, warn or fail).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogIndexManager {
+
+    private static final String ID = "_id";
+    private static final Pattern PLAN_REGRESSIONS = Pattern.compile("COLLSCAN|SORT");
+
+    // Placeholders for explaining; plans only depend on the shape of a query
+    private static final String SAMPLE_PLAYLIST_ID = "sample-playlist";
+    private static final String SAMPLE_ID = "000000000000000000000000";
+    private static final long SAMPLE_GENERATION = 1;
+    private static final int SAMPLE_PAGE_SIZE = 50;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.indexes.plan-check:warn}")
+    private String planCheck;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensureIndexes();
+        if (!"off".equalsIgnoreCase(planCheck)) {
+            verifyQueryPlans();
+        }
+    }
+
+    /**
+     * Create the declared indexes that do not exist yet
+     */
+    public void ensureIndexes() {
+        declaredIndexes().forEach((type, indexes) ->
+                indexes.forEach(index -> mongoTemplate.indexOps(type).ensureIndex(index)));
+    }
+
+    /**
+     * Explain every canonical query and report those whose plan scans the collection or sorts in memory
+     *
+     * @throws IllegalStateException if app.indexes.plan-check is fail and a plan regressed
+     */
+    public void verifyQueryPlans() {
+        List<String> regressions = new ArrayList<>();
+        canonicalQueries().forEach((name, query) -> {
+            List<String> stages = new ArrayList<>();
+            collectStages(explain(query), stages);
+            List<String> offending = stages.stream().filter(stage -> PLAN_REGRESSIONS.matcher(stage).matches()).toList();
+            if (offending.isEmpty()) {
+                log.debug("Query plan of '{}': {}", name, stages);
+            } else {
+                regressions.add(name + " " + offending);
+            }
+        });
+
+        if (regressions.isEmpty()) {
+            log.info("All {} catalog queries are served by indexes", canonicalQueries().size());
+            return;
+        }
+        String message = "Catalog queries not served by an index: " + String.join(", ", regressions);
+        if ("fail".equalsIgnoreCase(planCheck)) {
+            throw new IllegalStateException(message);
+        }
+        log.warn("!!! {}", message);
+    }
+
+    /**
+     * One index per query shape of the services: equality fields first, then the sort
+     */
+    private static Map<Class<?>, List<Index>> declaredIndexes() {
+        Map<Class<?>, List<Index>> indexes = new LinkedHashMap<>();
+        indexes.put(Channel.class, List.of(
+                // Listings, sorted by name with _id breaking ties for keyset pagination
+                index("playlist_name_id", "playlistId", "name", ID),
+                index("playlist_group_name_id", "playlistId", "group", "name", ID),
+                // Search, by prefix of any title token
+                index("playlist_search_tokens", "playlistId", "searchTokens"),
+                // Refresh diffs, favorites and chunked purges
+                index("playlist_fingerprint", "playlistId", "fingerprint"),
+                index("playlist_id", "playlistId", ID),
+                // Authorized item lookups
+                index("id_owner", ID, "ownerId")));
+        indexes.put(Movie.class, List.of(
+                index("playlist_title_id", "playlistId", "title", ID),
+                index("playlist_genre_title_id", "playlistId", "genre", "title", ID),
+                index("playlist_search_tokens", "playlistId", "searchTokens"),
+                index("playlist_fingerprint", "playlistId", "fingerprint"),
+                index("playlist_id", "playlistId", ID),
+                index("id_owner", ID, "ownerId")));
+        indexes.put(Series.class, List.of(
+                index("playlist_title_id", "playlistId", "title", ID),
+                index("playlist_genre_title_id", "playlistId", "genre", "title", ID),
+                index("playlist_search_tokens", "playlistId", "searchTokens"),
+                // Episodes are appended to the series of a generation by title, and favorite series found by it
+                index("playlist_title_generation", "playlistId", "title", "generation"),
+                index("playlist_id", "playlistId", ID),
+                index("id_owner", ID, "ownerId")));
+        indexes.put(Playlist.class, List.of(
+                index("user", "userId")));
+        indexes.put(FavoriteSet.class, List.of(
+                // Favorites are dropped with their playlist
+                index("playlist", "playlistId")));
+        indexes.put(WatchProgress.class, List.of(
+                // Recent history of a user, read when it is not in the watch history store
+                index("user_watched", "userId", "watchedAt"),
+                // History is dropped with its playlist
+                index("playlist", "playlistId")));
+        return indexes;
+    }
+
+    /**
+     * The queries the services run, with placeholder values
+     */
+    private static Map<String, TypedQuery> canonicalQueries() {
+        Map<String, TypedQuery> queries = new LinkedHashMap<>();
+        queries.put("channels of a playlist", page(Channel.class, "name", null));
+        queries.put("channels of a group", page(Channel.class, "name", Criteria.where("group").is("News")));
+        queries.put("favorite channels", favorites(Channel.class, "fingerprint"));
+        queries.put("channels after a cursor", page(Channel.class, "name", new Criteria().orOperator(
+                Criteria.where("name").gt("M"),
+                Criteria.where("name").is("M").and("id").gt(SAMPLE_ID))));
+        queries.put("channels by search terms", search(Channel.class));
+
+        for (Class<?> type : List.of(Movie.class, Series.class)) {
+            String content = type == Movie.class ? "movies" : "series";
+            queries.put(content + " of a playlist", page(type, "title", null));
+            queries.put(content + " of a genre", page(type, "title", Criteria.where("genre").is("Drama")));
+            queries.put("favorite " + content, favorites(type, type == Movie.class ? "fingerprint" : "title"));
+            queries.put(content + " by search terms", search(type));
+        }
+
+        queries.put("content to purge", new TypedQuery(Channel.class,
+                new Query(Criteria.where("playlistId").is(SAMPLE_PLAYLIST_ID)).with(Sort.by(ID)).limit(1)));
+        queries.put("playlists of a user", new TypedQuery(Playlist.class,
+                new Query(Criteria.where("userId").is("user"))));
+        queries.put("watch history of a user", new TypedQuery(WatchProgress.class,
+                new Query(Criteria.where("userId").is("user"))
+                        .with(Sort.by(Sort.Direction.DESC, "watchedAt"))
+                        .limit(SAMPLE_PAGE_SIZE)));
+        return queries;
+    }
+
+    private static TypedQuery page(Class<?> type, String sortField, Criteria filter) {
+        Query query = new Query(PlaylistGenerationService.visibleIn(SAMPLE_PLAYLIST_ID, SAMPLE_GENERATION))
+                .with(KeysetCursor.sort(sortField))
+                .limit(SAMPLE_PAGE_SIZE);
+        if (filter != null) {
+            query.addCriteria(filter);
+        }
+        return new TypedQuery(type, query);
+    }
+
+    private static TypedQuery favorites(Class<?> type, String key) {
+        Query query = new Query(PlaylistGenerationService.visibleIn(SAMPLE_PLAYLIST_ID, SAMPLE_GENERATION))
+                .addCriteria(Criteria.where(key).in(List.of("first", "second")));
+        return new TypedQuery(type, query);
+    }
+    
+    private static TypedQuery search(Class<?> type) {
+        Query query = new Query(PlaylistGenerationService.visibleIn(SAMPLE_PLAYLIST_ID, SAMPLE_GENERATION))
+                .addCriteria(SearchService.matching(List.of("night", "sky")))
+                .limit(SAMPLE_PAGE_SIZE);
+        return new TypedQuery(type, query);
+    }
+    
+    private static Index index(String name, String... fields) {
+        Index index = new Index().named(name);
+        for (String field : fields) {
+            index.on(field, Sort.Direction.ASC);
+        }
+        return index;
+    }
+
+    private Document explain(TypedQuery query) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(query.type());
+        QueryMapper mapper = new QueryMapper(mongoTemplate.getConverter());
+        Document filter = mapper.getMappedObject(query.query().getQueryObject(), entity);
+        Document sort = mapper.getMappedSort(query.query().getSortObject(), entity);
+
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(query.type()))
+                .find(filter)
+                .sort(sort)
+                .limit(query.query().getLimit())
+                .explain(ExplainVerbosity.QUERY_PLANNER)
+                .get("queryPlanner", Document.class)
+                .get("winningPlan", Document.class);
+    }
+
+    /**
+     * Collect the stage names of a plan tree, whatever the nesting of the server version
+     */
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+
+    private record TypedQuery(Class<?> type, Query query) {
+    }
+}
@@ -1,85 +1,118 @@
 package com.ahmed.iptvapp.service;
 
+import com.ahmed.iptvapp.dto.BatchItemDto;
+import com.ahmed.iptvapp.dto.ChannelSummaryDto;
+import com.ahmed.iptvapp.dto.FacetCountDto;
 import com.ahmed.iptvapp.dto.PageResponse;
+import com.ahmed.iptvapp.dto.SearchHitDto;
 import com.ahmed.iptvapp.model.Channel;
-import com.ahmed.iptvapp.repository.ChannelRepository;
-import com.ahmed.iptvapp.repository.PlaylistRepository;
+import com.ahmed.iptvapp.model.Playlist;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ChannelService {
     
-    private final ChannelRepository channelRepository;
-    private final PlaylistRepository playlistRepository;
+    private final PlaylistAccessService playlistAccess;
     private final MongoTemplate mongoTemplate;
+    private final PlaylistFacetService facetService;
+    private final FavoriteService favoriteService;
     
     // Cache key patterns for pagination
     private static final String CHANNEL_LIST_CACHE_KEY = "playlist:%s:channels:page:%d:size:%d";
     private static final String CHANNEL_GROUP_LIST_CACHE_KEY = "playlist:%s:group:%s:channels:page:%d:size:%d";
-    private static final String CHANNEL_FAVORITES_CACHE_KEY = "playlist:%s:favorites:page:%d:size:%d";
     private static final String CHANNEL_COUNT_CACHE_KEY = "playlist:%s:channels:count";
     private static final String CHANNEL_GROUP_COUNT_CACHE_KEY = "playlist:%s:group:%s:channels:count";
-    private static final String CHANNEL_FAVORITES_COUNT_CACHE_KEY = "playlist:%s:favorites:count";
+    
+    // Fields listings show; the full channel is only read for the detail view
+    private static final String[] SUMMARY_FIELDS = {"name", "group", "logoUrl", "streamUrl", "fingerprint"};
+    
+    // Order of channel listings, which favorites follow
+    private static final Comparator<ChannelSummaryDto> LISTING_ORDER = Comparator
+            .comparing(ChannelSummaryDto::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(ChannelSummaryDto::getId);
     
     /**
      * Get paginated channels for a playlist
      */
-    public PageResponse<Channel> getChannelsByPlaylistPaginated(String playlistId, String userId, int page, int size) {
+    public PageResponse<ChannelSummaryDto> getChannelsByPlaylistPaginated(String playlistId, String userId, int page, int size) {
         // Verify the user owns the playlist
-        verifyPlaylistAccess(playlistId, userId);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
         // Get from database with pagination
-        Pageable pageable = PageRequest.of(page, size, Sort.by("name").ascending());
+        Pageable pageable = PageRequest.of(page, size, KeysetCursor.sort("name"));
         
         Query query = new Query()
-                .addCriteria(Criteria.where("playlistId").is(playlistId))
+                .addCriteria(PlaylistGenerationService.visibleIn(playlist))
                 .with(pageable);
         
-        List<Channel> channels = mongoTemplate.find(query, Channel.class);
-        long total = getChannelCount(playlistId);
+        List<ChannelSummaryDto> channels = findSummaries(playlist, query);
+        long total = getChannelCount(playlist);
         
-        return PageResponse.of(channels, page, size, total);
+        PageResponse<ChannelSummaryDto> response = PageResponse.of(channels, page, size, total);
+        response.setNextCursor(KeysetCursor.next(response, ChannelSummaryDto::getName, ChannelSummaryDto::getId));
+        return response;
+    }
+    
+    /**
+     * Get the channels of a playlist following a cursor
+     *
+     * @param cursor Cursor of the previous page, or blank for the first page
+     * @param includeTotal Whether to count all channels; without it only the presence of a next page is known
+     */
+    public PageResponse<ChannelSummaryDto> getChannelsByPlaylistAfter(String playlistId, String userId, String cursor,
+                                                            int size, boolean includeTotal) {
+        // Verify the user owns the playlist
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
+        
+        Query query = new Query().addCriteria(PlaylistGenerationService.visibleIn(playlist));
+        query.fields().include(SUMMARY_FIELDS);
+        PageResponse<ChannelSummaryDto> response = KeysetCursor.find(mongoTemplate, query, Channel.class,
+                ChannelSummaryDto.class, "name", ChannelSummaryDto::getName, ChannelSummaryDto::getId, cursor, size,
+                includeTotal);
+        markFavorites(playlist, response.getContent());
+        return response;
     }
     
     /**
      * Legacy method for backward compatibility
      * Get all channels for a playlist
      */
-    public List<Channel> getChannelsByPlaylist(String playlistId, String userId) {
-        PageResponse<Channel> response = getChannelsByPlaylistPaginated(playlistId, userId, 0, Integer.MAX_VALUE);
+    public List<ChannelSummaryDto> getChannelsByPlaylist(String playlistId, String userId) {
+        PageResponse<ChannelSummaryDto> response = getChannelsByPlaylistPaginated(playlistId, userId, 0, Integer.MAX_VALUE);
         return response.getContent();
     }
     
     /**
      * Get paginated channels by group
      */
-    public PageResponse<Channel> getChannelsByGroupPaginated(String playlistId, String group, String userId, int page, int size) {
+    public PageResponse<ChannelSummaryDto> getChannelsByGroupPaginated(String playlistId, String group, String userId, int page, int size) {
         // Verify the user owns the playlist
-        verifyPlaylistAccess(playlistId, userId);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
         // Get from database with pagination
-        Pageable pageable = PageRequest.of(page, size, Sort.by("name").ascending());
+        Pageable pageable = PageRequest.of(page, size, KeysetCursor.sort("name"));
         
         Query query = new Query()
-                .addCriteria(Criteria.where("playlistId").is(playlistId))
+                .addCriteria(PlaylistGenerationService.visibleIn(playlist))
                 .addCriteria(Criteria.where("group").is(group))
                 .with(pageable);
         
-        List<Channel> channels = mongoTemplate.find(query, Channel.class);
-        long total = getChannelCountByGroup(playlistId, group);
+        List<ChannelSummaryDto> channels = findSummaries(playlist, query);
+        long total = getChannelCountByGroup(playlist, group);
         
         return PageResponse.of(channels, page, size, total);
     }
@@ -88,8 +121,8 @@ public class ChannelService {
      * Legacy method for backward compatibility
      * Get channels by group
      */
-    public List<Channel> getChannelsByGroup(String playlistId, String group, String userId) {
-        PageResponse<Channel> response = getChannelsByGroupPaginated(playlistId, group, userId, 0, Integer.MAX_VALUE);
+    public List<ChannelSummaryDto> getChannelsByGroup(String playlistId, String group, String userId) {
+        PageResponse<ChannelSummaryDto> response = getChannelsByGroupPaginated(playlistId, group, userId, 0, Integer.MAX_VALUE);
         return response.getContent();
     }
     
@@ -97,59 +130,58 @@ public class ChannelService {
      * Get a specific channel
      */
     public Optional<Channel> getChannel(String channelId, String userId) {
-        Optional<Channel> channelOpt = channelRepository.findById(channelId);
-        
-        return channelOpt.flatMap(channel -> {
-            // Verify the user owns the playlist the channel belongs to
-            return playlistRepository.findById(channel.getPlaylistId())
-                    .filter(playlist -> playlist.getUserId().equals(userId))
-                    .map(playlist -> channel);
-        });
+        return playlistAccess.findOwnedContent(new Query(Criteria.where("id").is(channelId)), userId,
+                Channel.class, Channel::getPlaylistId);
     }
     
     /**
-     * Toggle favorite status
+     * Get many channels at once, in request order, marking the ids not found
+     */
+    public List<BatchItemDto<Channel>> getChannels(List<String> channelIds, String userId) {
+        return playlistAccess.findOwnedContent(channelIds, userId, Channel.class, Channel::getId, Channel::getPlaylistId);
+    }
+    
+    /**
+     * Toggle favorite status; the channel document is not written
      */
     public Channel toggleFavorite(String channelId, String userId) {
         Channel channel = getChannel(channelId, userId)
                 .orElseThrow(() -> new RuntimeException("Channel not found or access denied"));
         
-        channel.setFavorite(!channel.getFavorite());
-        Channel updatedChannel = channelRepository.save(channel);
-        
-        // Invalidate relevant caches
-        invalidateChannelCaches(channel.getPlaylistId());
-        
-        return updatedChannel;
+        String key = FavoriteService.key(channel.getPlaylistId(), channel.getFingerprint(),
+                channel.getStreamUrl(), channel.getName());
+        channel.setFavorite(favoriteService.toggle(userId, channel.getPlaylistId(), SearchHitDto.Type.CHANNEL, key));
+        return channel;
     }
     
     /**
-     * Get paginated favorite channels
+     * Get paginated favorite channels: the favorites of the playlist are fetched at once by fingerprint
      */
-    public PageResponse<Channel> getFavoritesPaginated(String playlistId, String userId, int page, int size) {
+    public PageResponse<ChannelSummaryDto> getFavoritesPaginated(String playlistId, String userId, int page, int size) {
         // Verify the user owns the playlist
-        verifyPlaylistAccess(playlistId, userId);
-        
-        // Get from database with pagination
-        Pageable pageable = PageRequest.of(page, size, Sort.by("name").ascending());
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
+        Set<String> favorites = favoriteService.keys(userId, playlistId, SearchHitDto.Type.CHANNEL);
+        if (favorites.isEmpty()) {
+            return PageResponse.of(List.of(), page, size, 0);
+        }
         Query query = new Query()
-                .addCriteria(Criteria.where("playlistId").is(playlistId))
-                .addCriteria(Criteria.where("favorite").is(true))
-                .with(pageable);
-        
-        List<Channel> channels = mongoTemplate.find(query, Channel.class);
-        long total = getFavoriteChannelCount(playlistId);
-        
-        return PageResponse.of(channels, page, size, total);
+                .addCriteria(PlaylistGenerationService.visibleIn(playlist))
+                .addCriteria(Criteria.where("fingerprint").in(favorites));
+        query.fields().include(SUMMARY_FIELDS);
+        List<ChannelSummaryDto> channels = mongoTemplate.query(Channel.class).as(ChannelSummaryDto.class)
+                .matching(query).all();
+        channels.forEach(channel -> channel.setFavorite(true));
+        
+        return FavoriteService.page(channels, LISTING_ORDER, page, size);
     }
     
     /**
      * Legacy method for backward compatibility
      * Get all favorite channels
      */
-    public List<Channel> getFavorites(String playlistId, String userId) {
-        PageResponse<Channel> response = getFavoritesPaginated(playlistId, userId, 0, Integer.MAX_VALUE);
+    public List<ChannelSummaryDto> getFavorites(String playlistId, String userId) {
+        PageResponse<ChannelSummaryDto> response = getFavoritesPaginated(playlistId, userId, 0, Integer.MAX_VALUE);
         return response.getContent();
     }
     
@@ -158,62 +190,51 @@ public class ChannelService {
      */
     public List<String> getChannelGroups(String playlistId, String userId) {
         // Verify the user owns the playlist
-        verifyPlaylistAccess(playlistId, userId);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        return channelRepository.findByPlaylistId(playlistId).stream()
-                .map(Channel::getGroup)
-                .distinct()
-                .sorted()
-                .toList();
+        return facetService.getValues(playlist, Channel.class, "group");
     }
     
     /**
-     * Helper method to verify playlist access
+     * Get all available channel groups with the number of channels in each
      */
-    private void verifyPlaylistAccess(String playlistId, String userId) {
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
+    public List<FacetCountDto> getChannelGroupCounts(String playlistId, String userId) {
+        // Verify the user owns the playlist
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
+        return facetService.getFacets(playlist, Channel.class, "group");
     }
     
     /**
-     * Get channel count for a playlist
+     * Read the listing fields of the channels matching a query, flagged with the favorites of the owner
      */
-    private long getChannelCount(String playlistId) {
-        Query query = new Query().addCriteria(Criteria.where("playlistId").is(playlistId));
-        return mongoTemplate.count(query, Channel.class);
+    private List<ChannelSummaryDto> findSummaries(Playlist playlist, Query query) {
+        query.fields().include(SUMMARY_FIELDS);
+        return markFavorites(playlist, mongoTemplate.query(Channel.class).as(ChannelSummaryDto.class).matching(query).all());
     }
     
-    /**
-     * Get channel count for a playlist and group
-     */
-    private long getChannelCountByGroup(String playlistId, String group) {
-        Query query = new Query()
-                .addCriteria(Criteria.where("playlistId").is(playlistId))
-                .addCriteria(Criteria.where("group").is(group));
-        return mongoTemplate.count(query, Channel.class);
+    private List<ChannelSummaryDto> markFavorites(Playlist playlist, List<ChannelSummaryDto> channels) {
+        return favoriteService.mark(playlist, SearchHitDto.Type.CHANNEL, channels,
+                channel -> FavoriteService.key(playlist.getId(), channel.getFingerprint(), channel.getStreamUrl(),
+                        channel.getName()),
+                ChannelSummaryDto::setFavorite);
     }
     
     /**
-     * Get favorite channel count for a playlist
+     * Get channel count for a playlist
      */
-    private long getFavoriteChannelCount(String playlistId) {
-        Query query = new Query()
-                .addCriteria(Criteria.where("playlistId").is(playlistId))
-                .addCriteria(Criteria.where("favorite").is(true));
+    private long getChannelCount(Playlist playlist) {
+        Query query = new Query().addCriteria(PlaylistGenerationService.visibleIn(playlist));
         return mongoTemplate.count(query, Channel.class);
     }
     
     /**
-     * Invalidate channel-related caches for a playlist
+     * Get channel count for a playlist and group
      */
-    private void invalidateChannelCaches(String playlistId) {
-        // This is a placeholder for cache invalidation
-        // In a real implementation, you would clear relevant cache entries
-        log.debug("Invalidating channel caches for playlist: {}", playlistId);
+    private long getChannelCountByGroup(Playlist playlist, String group) {
+        Query query = new Query()
+                .addCriteria(PlaylistGenerationService.visibleIn(playlist))
+                .addCriteria(Criteria.where("group").is(group));
+        return mongoTemplate.count(query, Channel.class);
     }
 }
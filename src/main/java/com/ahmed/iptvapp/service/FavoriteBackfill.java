@@ -0,0 +1,117 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.SearchHitDto;
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Playlist;
+import com.ahmed.iptvapp.model.Series;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Moves favorites stored on content documents, before {@link FavoriteService} kept them apart, into the
+ * favorites of the playlist owners. Runs once in the background at startup, one batch of marked documents at
+ * a time; the flag is removed from the documents it moved, so it is a no-op once everything is migrated.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FavoriteBackfill {
+
+    private static final String ID = "_id";
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final FavoriteService favoriteService;
+    private final Executor taskExecutor;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        taskExecutor.execute(() -> {
+            try {
+                backfill();
+            } catch (Exception e) {
+                // Next startup resumes with whatever is still flagged
+                log.error("Failed to move favorites off content documents", e);
+            }
+        });
+    }
+
+    public void backfill() {
+        long moved = backfill(Channel.class, SearchHitDto.Type.CHANNEL, "name")
+                + backfill(Movie.class, SearchHitDto.Type.MOVIE, "title")
+                + backfill(Series.class, SearchHitDto.Type.SERIES, "title");
+        if (moved > 0) {
+            log.info("Moved {} favorites off content documents", moved);
+        }
+    }
+
+    private long backfill(Class<?> type, SearchHitDto.Type favoriteType, String titleField) {
+        // Read raw: the favorite flag is no longer mapped
+        String collection = mongoTemplate.getCollectionName(type);
+        Map<String, Optional<String>> owners = new HashMap<>();
+        long moved = 0;
+        while (true) {
+            Query query = new Query(Criteria.where("favorite").is(true)).with(Sort.by(ID)).limit(BATCH_SIZE);
+            query.fields().include("playlistId", "ownerId", "fingerprint", "streamUrl", titleField);
+            List<Document> documents = mongoTemplate.find(query, Document.class, collection);
+            if (documents.isEmpty()) {
+                return moved;
+            }
+
+            Map<List<String>, Set<String>> favorites = new HashMap<>();
+            List<Object> ids = new ArrayList<>();
+            for (Document document : documents) {
+                ids.add(document.get(ID));
+                String playlistId = document.getString("playlistId");
+                String ownerId = Optional.ofNullable(document.getString("ownerId"))
+                        .or(() -> owners.computeIfAbsent(playlistId, this::ownerOf))
+                        .orElse(null);
+                if (playlistId == null || ownerId == null) {
+                    // Content of a deleted playlist, waiting for its purge
+                    continue;
+                }
+                String title = document.getString(titleField);
+                String key = favoriteType == SearchHitDto.Type.SERIES ? title
+                        : FavoriteService.key(playlistId, document.getString("fingerprint"),
+                                document.getString("streamUrl"), title);
+                if (key != null) {
+                    favorites.computeIfAbsent(List.of(ownerId, playlistId), set -> new LinkedHashSet<>()).add(key);
+                }
+            }
+
+            for (Map.Entry<List<String>, Set<String>> set : favorites.entrySet()) {
+                favoriteService.addAll(set.getKey().get(0), set.getKey().get(1), favoriteType, set.getValue());
+                moved += set.getValue().size();
+            }
+            mongoTemplate.updateMulti(new Query(Criteria.where(ID).in(ids)), new Update().unset("favorite"), collection);
+        }
+    }
+
+    private Optional<String> ownerOf(String playlistId) {
+        if (playlistId == null) {
+            return Optional.empty();
+        }
+        Query query = new Query(Criteria.where("id").is(playlistId));
+        query.fields().include("userId");
+        return Optional.ofNullable(mongoTemplate.findOne(query, Playlist.class)).map(Playlist::getUserId);
+    }
+}
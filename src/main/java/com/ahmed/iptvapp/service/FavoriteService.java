@@ -0,0 +1,217 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.cache.FavoriteSetStore;
+import com.ahmed.iptvapp.dto.PageResponse;
+import com.ahmed.iptvapp.dto.SearchHitDto;
+import com.ahmed.iptvapp.model.FavoriteSet;
+import com.ahmed.iptvapp.model.Playlist;
+import com.ahmed.iptvapp.service.m3u.ContentFingerprint;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Favorites of users, kept apart from the content they mark.
+ * A user has one set of keys per playlist and content type: the fingerprint of a channel or movie, the title of
+ * a series. Unlike document ids, those survive refreshes. The sets live in the {@link FavoriteSetStore} (Valkey,
+ * or memory), loaded from MongoDB on first use, so a toggle is a single set operation and a listing reads its
+ * flags with a single set read. Toggles are written behind to MongoDB, the latest state per key, every
+ * app.favorites.flush-interval-ms.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FavoriteService {
+
+    private static final String SET_KEY = "favorites:%s";
+
+    private final FavoriteSetStore store;
+    private final MongoTemplate mongoTemplate;
+
+    // Toggles not written to MongoDB yet, with the latest state of each
+    private final Map<Change, Boolean> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Mark or unmark an item
+     *
+     * @param key Favorite key of the item, see {@link #key(String, String, String, String)}
+     * @return whether the item is a favorite now
+     */
+    public boolean toggle(String userId, String playlistId, SearchHitDto.Type type, String key) {
+        String setKey = setKey(userId, playlistId, type);
+        Boolean favorite = store.toggle(setKey, key).orElseGet(() -> {
+            load(userId, playlistId, type);
+            return store.toggle(setKey, key)
+                    .orElseThrow(() -> new IllegalStateException("Favorites could not be loaded: " + setKey));
+        });
+        pending.put(new Change(userId, playlistId, type, key), favorite);
+        return favorite;
+    }
+
+    /**
+     * Favorite keys of a user in a playlist
+     */
+    public Set<String> keys(String userId, String playlistId, SearchHitDto.Type type) {
+        return store.members(setKey(userId, playlistId, type)).orElseGet(() -> load(userId, playlistId, type));
+    }
+
+    /**
+     * Flag the items of a listing with the favorites of the playlist owner
+     */
+    public <T> List<T> mark(Playlist playlist, SearchHitDto.Type type, List<T> items,
+                            Function<T, String> key, BiConsumer<T, Boolean> setFavorite) {
+        if (items.isEmpty()) {
+            return items;
+        }
+        Set<String> favorites = keys(playlist.getUserId(), playlist.getId(), type);
+        items.forEach(item -> setFavorite.accept(item, favorites.contains(key.apply(item))));
+        return items;
+    }
+
+    /**
+     * Add favorites directly to MongoDB, e.g. when migrating them; the cached set is reloaded on next use
+     */
+    public synchronized void addAll(String userId, String playlistId, SearchHitDto.Type type,
+                                    Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        mongoTemplate.upsert(byId(setId(userId, playlistId, type)),
+                added(userId, playlistId, type, keys), FavoriteSet.class);
+        store.remove(setKey(userId, playlistId, type));
+    }
+
+    /**
+     * Drop the favorites of a deleted playlist
+     */
+    public synchronized void forgetPlaylist(Playlist playlist) {
+        pending.keySet().removeIf(change -> change.playlistId().equals(playlist.getId()));
+        mongoTemplate.remove(new Query(Criteria.where("playlistId").is(playlist.getId())), FavoriteSet.class);
+        for (SearchHitDto.Type type : SearchHitDto.Type.values()) {
+            store.remove(setKey(playlist.getUserId(), playlist.getId(), type));
+        }
+    }
+
+    /**
+     * Write the pending toggles to MongoDB, one upsert and one pull per set at most
+     */
+    @Scheduled(fixedDelayString = "${app.favorites.flush-interval-ms:2000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<Change, Boolean> batch = new HashMap<>(pending);
+        Map<String, List<Change>> added = new HashMap<>();
+        Map<String, List<Change>> removed = new HashMap<>();
+        batch.forEach((change, favorite) -> (favorite ? added : removed)
+                .computeIfAbsent(setId(change.userId(), change.playlistId(), change.type()), id -> new ArrayList<>())
+                .add(change));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, FavoriteSet.class);
+        added.forEach((id, changes) -> {
+            Change first = changes.get(0);
+            bulk.upsert(byId(id), added(first.userId(), first.playlistId(), first.type(), keysOf(changes)));
+        });
+        removed.forEach((id, changes) -> bulk.updateOne(byId(id), new Update().pullAll("keys", keysOf(changes).toArray())));
+
+        try {
+            bulk.execute();
+        } catch (Exception e) {
+            // Left pending, so the next flush writes them again
+            log.error("Failed to write {} favorite changes", batch.size(), e);
+            return;
+        }
+        // Toggled again meanwhile: the newer state stays pending
+        batch.forEach(pending::remove);
+        log.debug("Wrote {} favorite changes", batch.size());
+    }
+
+    @PreDestroy
+    public void onShutdown() {
+        flush();
+    }
+
+    /**
+     * Favorite key of a channel or movie: its stored fingerprint, or the one it would have had for content
+     * imported before fingerprints were stored
+     */
+    public static String key(String playlistId, String fingerprint, String streamUrl, String title) {
+        return fingerprint != null ? fingerprint : ContentFingerprint.of(playlistId, streamUrl, title);
+    }
+
+    /**
+     * One page of favorites fetched together, in listing order
+     */
+    public static <T> PageResponse<T> page(List<T> favorites, Comparator<T> order, int page, int size) {
+        List<T> sorted = favorites.stream().sorted(order).toList();
+        int from = (int) Math.min((long) page * size, sorted.size());
+        int to = (int) Math.min((long) from + size, sorted.size());
+        return PageResponse.of(new ArrayList<>(sorted.subList(from, to)), page, size, sorted.size());
+    }
+
+    /**
+     * Read a set from MongoDB, with the toggles of this instance not written yet, into the store
+     */
+    private Set<String> load(String userId, String playlistId, SearchHitDto.Type type) {
+        FavoriteSet stored = mongoTemplate.findById(setId(userId, playlistId, type), FavoriteSet.class);
+        Set<String> keys = new HashSet<>(stored == null || stored.getKeys() == null ? List.of() : stored.getKeys());
+        pending.forEach((change, favorite) -> {
+            if (change.userId().equals(userId) && change.playlistId().equals(playlistId) && change.type() == type) {
+                if (favorite) {
+                    keys.add(change.key());
+                } else {
+                    keys.remove(change.key());
+                }
+            }
+        });
+        store.load(setKey(userId, playlistId, type), keys);
+        return keys;
+    }
+
+    private static Update added(String userId, String playlistId, SearchHitDto.Type type, Collection<String> keys) {
+        Update update = new Update()
+                .setOnInsert("userId", userId)
+                .setOnInsert("playlistId", playlistId)
+                .setOnInsert("type", type.name());
+        update.addToSet("keys").each(keys.toArray());
+        return update;
+    }
+
+    private static List<String> keysOf(List<Change> changes) {
+        return changes.stream().map(Change::key).toList();
+    }
+
+    private static Query byId(String id) {
+        return new Query(Criteria.where("id").is(id));
+    }
+
+    private static String setId(String userId, String playlistId, SearchHitDto.Type type) {
+        return userId + ":" + playlistId + ":" + type.name().toLowerCase();
+    }
+
+    private static String setKey(String userId, String playlistId, SearchHitDto.Type type) {
+        return String.format(SET_KEY, setId(userId, playlistId, type));
+    }
+
+    private record Change(String userId, String playlistId, SearchHitDto.Type type, String key) {
+    }
+}
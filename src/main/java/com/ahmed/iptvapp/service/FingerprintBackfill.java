@@ -0,0 +1,85 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Stores the fingerprints of channels and movies imported before fingerprints were stored, so favorites keyed
+ * by them (see {@link FavoriteService#key}) are found by the favorites listings without waiting for a refresh
+ * to rewrite the documents. Runs once in the background at startup, walking the collections in _id order one
+ * batch at a time; documents that already have a fingerprint are skipped, so it is a no-op once everything is
+ * migrated.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FingerprintBackfill {
+
+    private static final String ID = "_id";
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final Executor taskExecutor;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        taskExecutor.execute(() -> {
+            try {
+                backfill();
+            } catch (Exception e) {
+                // Next startup resumes with whatever is still missing
+                log.error("Failed to backfill fingerprints", e);
+            }
+        });
+    }
+
+    public void backfill() {
+        backfill(Channel.class, "name");
+        backfill(Movie.class, "title");
+    }
+
+    private void backfill(Class<?> type, String titleField) {
+        String collection = mongoTemplate.getCollectionName(type);
+        long updated = 0;
+        Object lower = null;
+        while (true) {
+            Criteria missing = Criteria.where("fingerprint").exists(false);
+            Query query = new Query(lower == null ? missing : missing.and(ID).gt(lower))
+                    .with(Sort.by(ID))
+                    .limit(BATCH_SIZE);
+            query.fields().include("playlistId", "streamUrl", titleField);
+            List<Document> batch = mongoTemplate.find(query, Document.class, collection);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+            for (Document document : batch) {
+                String fingerprint = FavoriteService.key(document.getString("playlistId"), null,
+                        document.getString("streamUrl"), document.getString(titleField));
+                bulk.updateOne(new Query(Criteria.where(ID).is(document.get(ID))), Update.update("fingerprint", fingerprint));
+            }
+            bulk.execute();
+            updated += batch.size();
+            lower = batch.get(batch.size() - 1).get(ID);
+        }
+        if (updated > 0) {
+            log.info("Backfilled fingerprints of {} {}", updated, collection);
+        }
+    }
+}
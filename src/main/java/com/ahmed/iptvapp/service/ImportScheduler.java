@@ -0,0 +1,227 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.ImportQueueStatsDto;
+import com.ahmed.iptvapp.exception.ImportQueueFullException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs playlist imports and refreshes on the import workers, fairly across users.
+ * Every user has a queue per priority; workers take interactive imports (first imports a user waits for) before
+ * background ones (refreshes), and within a priority go round-robin over the users with waiting imports, skipping
+ * those already running app.import.per-user-concurrency imports. So a user queueing many huge playlists only
+ * ever holds a few workers, and everyone else's imports keep their turn. Queues are bounded per user and in
+ * total; an import that does not fit is rejected with {@link ImportQueueFullException} when submitted.
+ */
+@Service
+@Slf4j
+public class ImportScheduler {
+
+    public enum Priority {
+        INTERACTIVE,
+        BACKGROUND
+    }
+
+    private final Executor importExecutor;
+    private final int workers;
+    private final int perUserConcurrency;
+    private final int maxQueuedPerUser;
+    private final int maxQueued;
+    private final long retryAfterSeconds;
+
+    // All state below is guarded by this
+    private final Map<String, UserQueue> users = new HashMap<>();
+    // Users with waiting imports of each priority, in turn order
+    private final Map<Priority, Deque<String>> turns = Map.of(
+            Priority.INTERACTIVE, new ArrayDeque<>(),
+            Priority.BACKGROUND, new ArrayDeque<>());
+    private int running;
+    private int queued;
+    private long started;
+    private long rejected;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+
+    public ImportScheduler(@Qualifier("importExecutor") Executor importExecutor,
+                           @Value("${app.import.workers:4}") int workers,
+                           @Value("${app.import.per-user-concurrency:2}") int perUserConcurrency,
+                           @Value("${app.import.max-queued-per-user:10}") int maxQueuedPerUser,
+                           @Value("${app.import.max-queued:500}") int maxQueued,
+                           @Value("${app.import.retry-after-seconds:30}") long retryAfterSeconds) {
+        this.importExecutor = importExecutor;
+        this.workers = workers;
+        this.perUserConcurrency = perUserConcurrency;
+        this.maxQueuedPerUser = maxQueuedPerUser;
+        this.maxQueued = maxQueued;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Queue an import of a user
+     *
+     * @return completes with the result of the import once it ran
+     * @throws ImportQueueFullException if the user or the server has too many imports waiting
+     */
+    public <T> CompletableFuture<T> submit(String userId, Priority priority, Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Job job = new Job(userId, System.currentTimeMillis(), result, () -> {
+            try {
+                result.complete(work.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        synchronized (this) {
+            UserQueue user = users.computeIfAbsent(userId, id -> new UserQueue());
+            if (queued >= maxQueued || user.queued() >= maxQueuedPerUser) {
+                rejected++;
+                if (user.isIdle()) {
+                    users.remove(userId);
+                }
+                log.warn("Rejected {} import of user {}: {} imports waiting, {} of them the user's",
+                        priority, userId, queued, user.queued());
+                throw new ImportQueueFullException(
+                        "Too many playlist imports waiting. Please try again later.", retryAfterSeconds);
+            }
+            Deque<Job> jobs = user.jobs(priority);
+            if (jobs.isEmpty()) {
+                turns.get(priority).addLast(userId);
+            }
+            jobs.addLast(job);
+            queued++;
+            dispatch();
+        }
+        return result;
+    }
+
+    public synchronized ImportQueueStatsDto getStats() {
+        long now = System.currentTimeMillis();
+        long oldest = users.values().stream()
+                .flatMap(user -> user.jobs.values().stream())
+                .filter(jobs -> !jobs.isEmpty())
+                .mapToLong(jobs -> now - jobs.peekFirst().enqueuedAt())
+                .max()
+                .orElse(0);
+        return ImportQueueStatsDto.builder()
+                .workers(workers)
+                .running(running)
+                .queuedInteractive(queued(Priority.INTERACTIVE))
+                .queuedBackground(queued(Priority.BACKGROUND))
+                .activeUsers(users.size())
+                .started(started)
+                .rejected(rejected)
+                .averageWaitMillis(started == 0 ? 0 : totalWaitMillis / started)
+                .maxWaitMillis(maxWaitMillis)
+                .oldestWaitMillis(oldest)
+                .build();
+    }
+
+    /**
+     * Hand waiting imports to free workers, in turn order
+     */
+    private void dispatch() {
+        while (running < workers) {
+            Job job = next(Priority.INTERACTIVE);
+            if (job == null) {
+                job = next(Priority.BACKGROUND);
+            }
+            if (job == null) {
+                return;
+            }
+            start(job);
+        }
+    }
+
+    private Job next(Priority priority) {
+        Deque<String> turn = turns.get(priority);
+        for (int i = turn.size(); i > 0; i--) {
+            String userId = turn.pollFirst();
+            UserQueue user = users.get(userId);
+            if (user.running >= perUserConcurrency) {
+                // Keeps the turn for when one of the user's imports ends
+                turn.addLast(userId);
+                continue;
+            }
+            Deque<Job> jobs = user.jobs(priority);
+            Job job = jobs.pollFirst();
+            if (!jobs.isEmpty()) {
+                turn.addLast(userId);
+            }
+            return job;
+        }
+        return null;
+    }
+
+    private void start(Job job) {
+        long waited = System.currentTimeMillis() - job.enqueuedAt();
+        queued--;
+        running++;
+        users.get(job.userId()).running++;
+        started++;
+        totalWaitMillis += waited;
+        maxWaitMillis = Math.max(maxWaitMillis, waited);
+        log.debug("Starting import of user {} after {} ms ({} running, {} waiting)", job.userId(), waited, running, queued);
+
+        try {
+            importExecutor.execute(() -> {
+                try {
+                    job.work().run();
+                } finally {
+                    finished(job);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Workers are sized to the scheduler, so this only happens on shutdown
+            log.error("Import of user {} could not be started", job.userId(), e);
+            job.result().completeExceptionally(e);
+            finished(job);
+        }
+    }
+
+    private synchronized void finished(Job job) {
+        running--;
+        UserQueue user = users.get(job.userId());
+        user.running--;
+        if (user.isIdle()) {
+            users.remove(job.userId());
+        }
+        dispatch();
+    }
+
+    private int queued(Priority priority) {
+        return users.values().stream().mapToInt(user -> user.jobs(priority).size()).sum();
+    }
+
+    private record Job(String userId, long enqueuedAt, CompletableFuture<?> result, Runnable work) {
+    }
+
+    private static class UserQueue {
+        private final Map<Priority, Deque<Job>> jobs = Map.of(
+                Priority.INTERACTIVE, new ArrayDeque<>(),
+                Priority.BACKGROUND, new ArrayDeque<>());
+        private int running;
+
+        Deque<Job> jobs(Priority priority) {
+            return jobs.get(priority);
+        }
+
+        int queued() {
+            return jobs.values().stream().mapToInt(Deque::size).sum();
+        }
+
+        boolean isIdle() {
+            return running == 0 && queued() == 0;
+        }
+    }
+}
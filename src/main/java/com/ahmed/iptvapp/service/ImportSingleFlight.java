@@ -0,0 +1,117 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.cache.ImportLease;
+import com.ahmed.iptvapp.cache.ImportLeaseStore;
+import com.ahmed.iptvapp.dto.PlaylistImportResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs at most one import or refresh per playlist, and one import per user and URL, across all instances.
+ * The first caller takes a lease on the key in the {@link ImportLeaseStore} and gets a new task; callers arriving
+ * while it runs get that task instead of starting their own. Leases are renewed while their import runs, so a
+ * crashed instance releases its keys within app.import.lease.ttl-seconds. The fencing token of the lease goes
+ * with the generation the import writes, and committing checks it, so an import that lost its lease can never
+ * switch readers to its content.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportSingleFlight {
+
+    private final ImportLeaseStore leases;
+    private final AsyncTaskTrackerService taskTrackerService;
+
+    // Leases of imports running on this instance, renewed until they end
+    private final Set<ImportLease> held = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.import.lease.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    /**
+     * Lead the import of a key, or follow the one already running
+     */
+    public Flight join(String key) {
+        String taskId = taskTrackerService.createTask();
+        ImportLease lease = leases.acquire(key, taskId, TimeUnit.SECONDS.toMillis(ttlSeconds));
+        if (!lease.owned()) {
+            taskTrackerService.removeTask(taskId);
+            log.info("Import of {} already running as task {}", key, lease.holder());
+            return new Flight(lease.holder(), null);
+        }
+        held.add(lease);
+        return new Flight(taskId, lease);
+    }
+
+    /**
+     * End an import led by this instance, so the next caller starts a new one
+     */
+    public void land(Flight flight) {
+        if (flight.isLeader()) {
+            held.remove(flight.lease());
+            leases.release(flight.lease());
+        }
+    }
+
+    /**
+     * Status of the task of a flight, as a caller that started or joined it sees it
+     */
+    public PlaylistImportResponse status(Flight flight) {
+        return taskTrackerService.getTaskStatus(flight.taskId())
+                .orElseGet(() -> PlaylistImportResponse.pending(flight.taskId()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.import.lease.renew-interval-ms:20000}")
+    public void renew() {
+        long ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        for (ImportLease lease : held) {
+            try {
+                if (!leases.renew(lease, ttlMillis)) {
+                    // Another import may take the key now; the fence keeps this one from committing
+                    held.remove(lease);
+                    log.warn("Lost the import lease on {} held by task {}", lease.key(), lease.holder());
+                }
+            } catch (Exception e) {
+                // Tried again on the next round, while the lease has time left
+                log.error("Failed to renew the import lease on {}", lease.key(), e);
+            }
+        }
+    }
+
+    public static String playlistKey(String playlistId) {
+        return "playlist:" + playlistId;
+    }
+
+    public static String urlKey(String userId, String url) {
+        return "url:" + userId + ":" + UUID.nameUUIDFromBytes(url.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * An import as seen by one caller
+     *
+     * @param taskId Task of the import
+     * @param lease Lease of the import if the caller leads it, null if it joined one already running
+     */
+    public record Flight(String taskId, ImportLease lease) {
+
+        public boolean isLeader() {
+            return lease != null;
+        }
+
+        /**
+         * Fencing token to write and commit the import's generation under
+         */
+        public long fence() {
+            return lease.token();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.PageResponse;
+import com.ahmed.iptvapp.exception.InvalidCursorException;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination over a sort field and _id.
+ * A cursor holds the sort value and id of the last element of a page, and the next page is whatever sorts
+ * after that pair. It is read straight off the (playlistId, field, _id) index, so a deep page costs the same
+ * as the first one, where skip/limit walks every entry it skips.
+ */
+final class KeysetCursor {
+
+    private static final String ID = "id";
+    private static final char SEPARATOR = '|';
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * Sort order of keyset listings; offset pages use it too, so their cursors continue them exactly
+     */
+    static Sort sort(String field) {
+        return Sort.by(Sort.Direction.ASC, field, ID);
+    }
+
+    /**
+     * Find the page after a cursor, fetching one extra element to tell whether another page follows
+     *
+     * @param filter Criteria and projection of the listing
+     * @param domainType Type of the documents listed
+     * @param resultType Type the documents are read as
+     * @param cursor Cursor returned with the previous page, or null/blank for the first page
+     * @param includeTotal Whether to count the whole listing, which costs a count query
+     */
+    static <T> PageResponse<T> find(MongoTemplate mongoTemplate, Query filter, Class<?> domainType,
+                                    Class<T> resultType, String field,
+                                    Function<T, String> sortValue, Function<T, String> id,
+                                    String cursor, int size, boolean includeTotal) {
+        Long total = includeTotal ? mongoTemplate.count(filter, domainType) : null;
+
+        boolean first = cursor == null || cursor.isBlank();
+        Query query = filter.with(sort(field)).limit(size + 1);
+        if (!first) {
+            query.addCriteria(after(field, cursor));
+        }
+
+        List<T> content = mongoTemplate.query(domainType).as(resultType).matching(query).all();
+        String nextCursor = null;
+        if (content.size() > size) {
+            content = content.subList(0, size);
+            T last = content.get(size - 1);
+            nextCursor = encode(sortValue.apply(last), id.apply(last));
+        }
+        return PageResponse.ofCursor(content, first, size, total, nextCursor);
+    }
+
+    /**
+     * Cursor continuing after the last element of a page, or null if the page is the last one
+     */
+    static <T> String next(PageResponse<T> page, Function<T, String> sortValue, Function<T, String> id) {
+        if (page.isLast() || page.getContent().isEmpty()) {
+            return null;
+        }
+        T last = page.getContent().get(page.getContent().size() - 1);
+        return encode(sortValue.apply(last), id.apply(last));
+    }
+
+    static String encode(String value, String id) {
+        String key = value == null ? id : id + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Criteria for everything sorting after the element the cursor points at.
+     * Missing values sort first, and range operators never match them, so they are handled separately.
+     */
+    private static Criteria after(String field, String cursor) {
+        String key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+
+        int separator = key.indexOf(SEPARATOR);
+        String id = separator < 0 ? key : key.substring(0, separator);
+        if (!ObjectId.isValid(id)) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+
+        if (separator < 0) {
+            return new Criteria().orOperator(
+                    Criteria.where(field).is(null).and(ID).gt(id),
+                    Criteria.where(field).ne(null));
+        }
+        String value = key.substring(separator + 1);
+        return new Criteria().orOperator(
+                Criteria.where(field).gt(value),
+                Criteria.where(field).is(value).and(ID).gt(id));
+    }
+}
@@ -1,299 +1,354 @@
 package com.ahmed.iptvapp.service;
 
 import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Episode;
 import com.ahmed.iptvapp.model.Movie;
 import com.ahmed.iptvapp.model.Playlist;
 import com.ahmed.iptvapp.model.Series;
+import com.ahmed.iptvapp.service.m3u.ContentFingerprint;
+import com.ahmed.iptvapp.service.m3u.CountingInputStream;
+import com.ahmed.iptvapp.service.m3u.DownloadProgressListener;
+import com.ahmed.iptvapp.service.m3u.ExtInfTokenizer;
+import com.ahmed.iptvapp.service.m3u.M3UEntry;
+import com.ahmed.iptvapp.service.m3u.PlaylistDownload;
+import com.ahmed.iptvapp.service.m3u.SearchTokens;
+import com.ahmed.iptvapp.service.m3u.SeasonEpisodeDetector;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class M3UParserService {
 
-    private static final String EXTINF_PATTERN = "#EXTINF:([^,]*),(.*)";
-    private static final String EXTGRP_PATTERN = "group-title=\"([^\"]*)\"";
-    private static final String EXTLOGO_PATTERN = "tvg-logo=\"([^\"]*)\"";
-    private static final String MOVIE_CATEGORIES = "movie|cinema|film";
-    private static final String SERIES_CATEGORIES = "series|tv shows|episodes";
+    private static final String[] MOVIE_CATEGORIES = {"movie", "cinema", "film"};
+    private static final String[] SERIES_CATEGORIES = {"series", "tv shows", "episodes"};
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] EXTINF_BYTES = "#EXTINF".getBytes(StandardCharsets.US_ASCII);
+    
+    private final ForkJoinPool m3uParserPool;
+    
+    @Value("${app.import.parallel-parse.enabled:true}")
+    private boolean parallelParseEnabled;
+    
+    @Value("${app.import.parallel-parse.chunk-size:4194304}")
+    private int parallelParseChunkSize;
 
     /**
-     * Parse M3U content from a URL
+     * Parse M3U content from a URL into a playlist holding all of its content
      */
     public Playlist parseFromUrl(String url, String userId) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-        connection.setRequestMethod("GET");
+        Playlist playlist = createPlaylist(url, userId);
         
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
-        }
+        List<Channel> channels = new ArrayList<>();
+        List<Movie> movies = new ArrayList<>();
+        Map<String, Series> seriesMap = new HashMap<>();
         
-        Playlist playlist = Playlist.builder()
+        parseFromUrl(url, entry -> collectEntry(playlist.getId(), entry, channels, movies, seriesMap));
+        
+        playlist.setChannels(channels);
+        playlist.setMovies(movies);
+        playlist.setSeries(new ArrayList<>(seriesMap.values()));
+        return playlist;
+    }
+    
+    /**
+     * Create an empty playlist for a URL; its content is streamed separately
+     */
+    public Playlist createPlaylist(String url, String userId) {
+        return Playlist.builder()
                 .name("Playlist from " + url)
                 .url(url)
                 .userId(userId)
-                .content(content.toString())
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .lastRefreshed(LocalDateTime.now())
                 .active(true)
                 .build();
-        
-        parseContent(playlist, content.toString());
-        return playlist;
     }
-
+    
     /**
-     * Parse the actual M3U content and populate the playlist with channels, movies, and series
+     * Stream M3U entries from a URL, handing each entry to the sink as soon as it is read
+     *
+     * @return the number of entries read
      */
-    private void parseContent(Playlist playlist, String content) {
-        List<Channel> channels = new ArrayList<>();
-        List<Movie> movies = new ArrayList<>();
-        List<Series> series = new ArrayList<>();
-        Map<String, Series> seriesMap = new HashMap<>();
-        
-        BufferedReader reader = new BufferedReader(new java.io.StringReader(content));
+    public long parseFromUrl(String url, Consumer<M3UEntry> sink) throws IOException {
+        try (PlaylistDownload download = PlaylistDownload.open(url)) {
+            return parse(download.getInputStream(), download.getContentLength(), sink, null);
+        }
+    }
+    
+    /**
+     * Parse a playlist body, in parallel chunks when enabled, reporting progress as bytes are read
+     *
+     * @param contentLength Length of the body, or -1 if unknown
+     * @param progressListener Listener for bytes read, or null
+     * @return the number of entries read
+     */
+    public long parse(InputStream inputStream, long contentLength, Consumer<M3UEntry> sink,
+                      DownloadProgressListener progressListener) throws IOException {
+        InputStream in = progressListener == null ? inputStream
+                : new CountingInputStream(inputStream, contentLength, progressListener);
+        return parallelParseEnabled ? parseStreamParallel(in, sink) : parseStream(in, sink);
+    }
+    
+    /**
+     * Tokenize EXTINF/URL pairs straight off an input stream.
+     * Only the current line and the pending EXTINF header are kept in memory.
+     *
+     * @return the number of entries read
+     */
+    public long parseStream(InputStream inputStream, Consumer<M3UEntry> sink) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(inputStream, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
         String line;
         String currentExtInf = null;
+        long entries = 0;
+        
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("#EXTINF")) {
+                currentExtInf = line;
+            } else if (line.startsWith("http") && currentExtInf != null) {
+                // This is a stream URL following an EXTINF line
+                sink.accept(toEntry(currentExtInf, line));
+                currentExtInf = null;
+                entries++;
+            }
+        }
+        
+        return entries;
+    }
+    
+    /**
+     * Tokenize a playlist on the parser pool.
+     * The byte stream is cut into chunks at #EXTINF line boundaries, each chunk is parsed
+     * on its own worker, and the chunk results are handed to the sink in stream order, so the
+     * sink sees exactly the sequence the sequential parser would produce. Only a bounded
+     * number of chunks is in flight at any time.
+     *
+     * @return the number of entries read
+     */
+    public long parseStreamParallel(InputStream inputStream, Consumer<M3UEntry> sink) throws IOException {
+        int chunkSize = Math.max(READ_BUFFER_SIZE, parallelParseChunkSize);
+        int maxInFlight = Math.max(2, m3uParserPool.getParallelism() * 2);
+        Deque<ForkJoinTask<List<M3UEntry>>> inFlight = new ArrayDeque<>();
+        byte[] carry = new byte[0];
+        long entries = 0;
         
         try {
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("#EXTINF")) {
-                    currentExtInf = line;
-                } else if (line.startsWith("http") && currentExtInf != null) {
-                    // This is a stream URL following an EXTINF line
-                    processStreamEntry(playlist.getId(), currentExtInf, line, channels, movies, series, seriesMap);
-                    currentExtInf = null;
+            while (true) {
+                byte[] block = inputStream.readNBytes(chunkSize);
+                boolean endOfStream = block.length < chunkSize;
+                byte[] buffer = concat(carry, block);
+                
+                int cut = endOfStream ? buffer.length : lastEntryBoundary(buffer);
+                if (cut > 0) {
+                    byte[] chunk = cut == buffer.length ? buffer : Arrays.copyOfRange(buffer, 0, cut);
+                    carry = cut == buffer.length ? new byte[0] : Arrays.copyOfRange(buffer, cut, buffer.length);
+                    inFlight.add(m3uParserPool.submit(() -> parseChunk(chunk)));
+                } else {
+                    // No entry boundary yet, keep accumulating
+                    carry = buffer;
+                }
+                
+                while (inFlight.size() >= maxInFlight || (endOfStream && !inFlight.isEmpty())) {
+                    List<M3UEntry> parsed = inFlight.poll().join();
+                    parsed.forEach(sink);
+                    entries += parsed.size();
+                }
+                
+                if (endOfStream) {
+                    return entries;
                 }
             }
-            
-            playlist.setChannels(channels);
-            playlist.setMovies(movies);
-            playlist.setSeries(new ArrayList<>(seriesMap.values()));
-            
+        } finally {
+            inFlight.forEach(task -> task.cancel(true));
+        }
+    }
+    
+    /**
+     * Parse a single chunk that starts at an #EXTINF line (or at the start of the playlist)
+     */
+    private List<M3UEntry> parseChunk(byte[] chunk) {
+        List<M3UEntry> parsed = new ArrayList<>();
+        try {
+            parseStream(new ByteArrayInputStream(chunk), parsed::add);
         } catch (IOException e) {
-            log.error("Error parsing M3U content", e);
+            // Reading from memory does not fail
+            throw new IllegalStateException(e);
         }
+        return parsed;
     }
     
     /**
-     * Process a single stream entry (EXTINF + URL)
+     * Find the start of the last line beginning with #EXTINF
+     *
+     * @return the offset of that line, or 0 if there is none past the first byte
      */
-    private void processStreamEntry(String playlistId, String extInf, String streamUrl, 
-                                    List<Channel> channels, List<Movie> movies, 
-                                    List<Series> series, Map<String, Series> seriesMap) {
-        
-        Map<String, String> attributes = parseAttributes(extInf);
-        String title = parseTitle(extInf);
+    private static int lastEntryBoundary(byte[] buffer) {
+        for (int i = buffer.length - EXTINF_BYTES.length; i > 0; i--) {
+            byte previous = buffer[i - 1];
+            if (buffer[i] == '#' && (previous == '\n' || previous == '\r')
+                    && Arrays.equals(buffer, i, i + EXTINF_BYTES.length, EXTINF_BYTES, 0, EXTINF_BYTES.length)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+    
+    private static byte[] concat(byte[] first, byte[] second) {
+        if (first.length == 0) {
+            return second;
+        }
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+    
+    /**
+     * Turn a single stream entry (EXTINF + URL) into a typed entry
+     */
+    private M3UEntry toEntry(String extInf, String streamUrl) {
+        Map<String, String> attributes = new HashMap<>();
+        String title = ExtInfTokenizer.tokenize(extInf, attributes);
         String group = attributes.getOrDefault("group-title", "No Category");
         String logo = attributes.getOrDefault("tvg-logo", "");
         
+        M3UEntry.M3UEntryBuilder entry = M3UEntry.builder()
+                .title(title)
+                .group(group)
+                .streamUrl(streamUrl)
+                .logoUrl(logo)
+                .attributes(attributes);
+        
         // Determine the content type based on group
         if (isMovieGroup(group)) {
-            movies.add(createMovie(playlistId, title, group, streamUrl, logo, attributes));
+            entry.type(M3UEntry.ContentType.MOVIE);
         } else if (isSeriesGroup(group)) {
-            addToSeries(playlistId, title, group, streamUrl, logo, attributes, seriesMap);
+            // Try to extract series name and episode info from title
+            int[] seasonEpisode = SeasonEpisodeDetector.seasonEpisode(title);
+            entry.type(M3UEntry.ContentType.EPISODE)
+                    .seriesName(SeasonEpisodeDetector.seriesName(title))
+                    .seasonNumber(seasonEpisode[0])
+                    .episodeNumber(seasonEpisode[1]);
         } else {
-            channels.add(createChannel(playlistId, title, group, streamUrl, logo, attributes));
+            entry.type(M3UEntry.ContentType.CHANNEL);
+        }
+        return entry.build();
+    }
+    
+    /**
+     * Collect a streamed entry into in-memory channel, movie and series lists
+     */
+    private void collectEntry(String playlistId, M3UEntry entry, List<Channel> channels,
+                              List<Movie> movies, Map<String, Series> seriesMap) {
+        switch (entry.getType()) {
+            case MOVIE -> movies.add(createMovie(playlistId, entry));
+            case EPISODE -> seriesMap.computeIfAbsent(entry.getSeriesName(), name -> createSeries(playlistId, entry))
+                    .getEpisodes().add(createEpisode(playlistId, entry));
+            default -> channels.add(createChannel(playlistId, entry));
         }
     }
     
     /**
-     * Create a Channel object from parsed attributes
+     * Create a Channel object from a parsed entry
      */
-    private Channel createChannel(String playlistId, String name, String group, 
-                                 String streamUrl, String logoUrl, Map<String, String> attributes) {
+    public Channel createChannel(String playlistId, M3UEntry entry) {
         return Channel.builder()
-                .name(name)
-                .group(group)
-                .streamUrl(streamUrl)
-                .logoUrl(logoUrl)
+                .name(entry.getTitle())
+                .searchTokens(SearchTokens.tokenize(entry.getTitle()))
+                .group(entry.getGroup())
+                .streamUrl(entry.getStreamUrl())
+                .logoUrl(entry.getLogoUrl())
                 .playlistId(playlistId)
-                .favorite(false)
-                .attributes(attributes)
+                .fingerprint(ContentFingerprint.of(playlistId, entry.getStreamUrl(), entry.getTitle()))
+                .contentHash(contentHash(entry))
+                .attributes(entry.getAttributes())
                 .build();
     }
     
     /**
-     * Create a Movie object from parsed attributes
+     * Create a Movie object from a parsed entry
      */
-    private Movie createMovie(String playlistId, String title, String genre, 
-                             String streamUrl, String thumbnailUrl, Map<String, String> attributes) {
+    public Movie createMovie(String playlistId, M3UEntry entry) {
         return Movie.builder()
-                .title(title)
-                .genre(genre)
-                .streamUrl(streamUrl)
-                .thumbnailUrl(thumbnailUrl)
+                .title(entry.getTitle())
+                .searchTokens(SearchTokens.tokenize(entry.getTitle()))
+                .genre(entry.getGroup())
+                .streamUrl(entry.getStreamUrl())
+                .thumbnailUrl(entry.getLogoUrl())
                 .playlistId(playlistId)
-                .favorite(false)
-                .attributes(attributes)
+                .fingerprint(ContentFingerprint.of(playlistId, entry.getStreamUrl(), entry.getTitle()))
+                .contentHash(contentHash(entry))
+                .attributes(entry.getAttributes())
                 .build();
     }
     
     /**
-     * Add a stream to a series
+     * Create an empty Series from the first parsed episode entry
      */
-    private void addToSeries(String playlistId, String title, String genre, 
-                            String streamUrl, String thumbnailUrl, 
-                            Map<String, String> attributes, Map<String, Series> seriesMap) {
-        
-        // Try to extract series name and episode info from title
-        String seriesName = extractSeriesName(title);
-        int[] seasonEpisode = extractSeasonEpisode(title);
-        
-        Series series = seriesMap.getOrDefault(seriesName, Series.builder()
-                .title(seriesName)
-                .genre(genre)
-                .thumbnailUrl(thumbnailUrl)
+    public Series createSeries(String playlistId, M3UEntry entry) {
+        return Series.builder()
+                .title(entry.getSeriesName())
+                .searchTokens(SearchTokens.tokenize(entry.getSeriesName()))
+                .genre(entry.getGroup())
+                .thumbnailUrl(entry.getLogoUrl())
                 .playlistId(playlistId)
-                .favorite(false)
+                .contentHash(ContentFingerprint.contentHash(null, entry.getGroup(), entry.getLogoUrl()))
                 .episodes(new ArrayList<>())
                 .attributes(new HashMap<>())
-                .build());
-        
-        // Add episode
-        series.getEpisodes().add(com.ahmed.iptvapp.model.Episode.builder()
-                .id(UUID.randomUUID().toString())
-                .title(title)
-                .seasonNumber(seasonEpisode[0])
-                .episodeNumber(seasonEpisode[1])
-                .streamUrl(streamUrl)
-                .thumbnailUrl(thumbnailUrl)
-                .attributes(attributes)
-                .build());
-        
-        seriesMap.put(seriesName, series);
-    }
-    
-    /**
-     * Check if a group is a movie category
-     */
-    private boolean isMovieGroup(String group) {
-        return group.toLowerCase().matches(".*(" + MOVIE_CATEGORIES + ").*");
-    }
-    
-    /**
-     * Check if a group is a series category
-     */
-    private boolean isSeriesGroup(String group) {
-        return group.toLowerCase().matches(".*(" + SERIES_CATEGORIES + ").*");
+                .build();
     }
     
     /**
-     * Extract attributes from EXTINF line
+     * Create an Episode object from a parsed entry
      */
-    private Map<String, String> parseAttributes(String extInf) {
-        Map<String, String> attributes = new HashMap<>();
-        
-        // Extract group-title
-        Pattern groupPattern = Pattern.compile(EXTGRP_PATTERN);
-        Matcher groupMatcher = groupPattern.matcher(extInf);
-        if (groupMatcher.find()) {
-            attributes.put("group-title", groupMatcher.group(1));
-        }
-        
-        // Extract tvg-logo
-        Pattern logoPattern = Pattern.compile(EXTLOGO_PATTERN);
-        Matcher logoMatcher = logoPattern.matcher(extInf);
-        if (logoMatcher.find()) {
-            attributes.put("tvg-logo", logoMatcher.group(1));
-        }
-        
-        // Extract other tvg-* attributes
-        Pattern tvgPattern = Pattern.compile("tvg-([^=]*)=\"([^\"]*)\"");
-        Matcher tvgMatcher = tvgPattern.matcher(extInf);
-        while (tvgMatcher.find()) {
-            attributes.put("tvg-" + tvgMatcher.group(1), tvgMatcher.group(2));
-        }
-        
-        return attributes;
+    public Episode createEpisode(String playlistId, M3UEntry entry) {
+        return Episode.builder()
+                .id(UUID.randomUUID().toString())
+                .fingerprint(ContentFingerprint.of(playlistId, entry.getStreamUrl(), entry.getTitle()))
+                .contentHash(contentHash(entry))
+                .title(entry.getTitle())
+                .seasonNumber(entry.getSeasonNumber())
+                .episodeNumber(entry.getEpisodeNumber())
+                .streamUrl(entry.getStreamUrl())
+                .thumbnailUrl(entry.getLogoUrl())
+                .attributes(entry.getAttributes())
+                .build();
     }
     
     /**
-     * Extract title from EXTINF line
+     * Hash of the fields of an entry that can change without changing its fingerprint
      */
-    private String parseTitle(String extInf) {
-        Pattern pattern = Pattern.compile(EXTINF_PATTERN);
-        Matcher matcher = pattern.matcher(extInf);
-        if (matcher.find()) {
-            return matcher.group(2);
-        }
-        return "Unknown";
+    public String contentHash(M3UEntry entry) {
+        return ContentFingerprint.contentHash(entry.getAttributes(), entry.getGroup(), entry.getLogoUrl());
     }
     
     /**
-     * Extract series name from title
+     * Check if a group is a movie category
      */
-    private String extractSeriesName(String title) {
-        // Try to extract series name using common patterns
-        // E.g., "ShowName S01E01", "ShowName - Season 1 Episode 1"
-        String[] patterns = {
-            "(.+?)\\s+[Ss]\\d+[Ee]\\d+.*",  // ShowName S01E01
-            "(.+?)\\s+-\\s+Season\\s+\\d+\\s+Episode\\s+\\d+.*", // ShowName - Season 1 Episode 1
-            "(.+?)\\s+\\d+x\\d+.*" // ShowName 1x01
-        };
-        
-        for (String pattern : patterns) {
-            Pattern p = Pattern.compile(pattern);
-            Matcher m = p.matcher(title);
-            if (m.matches()) {
-                return m.group(1).trim();
-            }
-        }
-        
-        // If no pattern matches, just return the title
-        return title;
+    private boolean isMovieGroup(String group) {
+        return ExtInfTokenizer.containsIgnoreCase(group, MOVIE_CATEGORIES);
     }
     
     /**
-     * Extract season and episode numbers from title
+     * Check if a group is a series category
      */
-    private int[] extractSeasonEpisode(String title) {
-        int[] result = {0, 0}; // [season, episode]
-        
-        // Try S01E01 pattern
-        Pattern seasonEpisodePattern = Pattern.compile("[Ss](\\d+)[Ee](\\d+)");
-        Matcher seMatch = seasonEpisodePattern.matcher(title);
-        if (seMatch.find()) {
-            result[0] = Integer.parseInt(seMatch.group(1));
-            result[1] = Integer.parseInt(seMatch.group(2));
-            return result;
-        }
-        
-        // Try "Season X Episode Y" pattern
-        Pattern textPattern = Pattern.compile("Season\\s+(\\d+)\\s+Episode\\s+(\\d+)");
-        Matcher textMatch = textPattern.matcher(title);
-        if (textMatch.find()) {
-            result[0] = Integer.parseInt(textMatch.group(1));
-            result[1] = Integer.parseInt(textMatch.group(2));
-            return result;
-        }
-        
-        // Try 1x01 pattern
-        Pattern alternatePattern = Pattern.compile("(\\d+)x(\\d+)");
-        Matcher altMatch = alternatePattern.matcher(title);
-        if (altMatch.find()) {
-            result[0] = Integer.parseInt(altMatch.group(1));
-            result[1] = Integer.parseInt(altMatch.group(2));
-            return result;
-        }
-        
-        return result;
+    private boolean isSeriesGroup(String group) {
+        return ExtInfTokenizer.containsIgnoreCase(group, SERIES_CATEGORIES);
     }
 }
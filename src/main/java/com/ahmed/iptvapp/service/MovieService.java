@@ -1,179 +1,171 @@
 package com.ahmed.iptvapp.service;
 
+import com.ahmed.iptvapp.dto.BatchItemDto;
+import com.ahmed.iptvapp.dto.MovieSummaryDto;
+import com.ahmed.iptvapp.dto.FacetCountDto;
 import com.ahmed.iptvapp.dto.PageResponse;
+import com.ahmed.iptvapp.dto.SearchHitDto;
+import com.ahmed.iptvapp.model.Playlist;
 import com.ahmed.iptvapp.model.Movie;
-import com.ahmed.iptvapp.repository.MovieRepository;
-import com.ahmed.iptvapp.repository.PlaylistRepository;
+import com.ahmed.iptvapp.service.m3u.SearchTokens;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MovieService {
     
-    private final MovieRepository movieRepository;
-    private final PlaylistRepository playlistRepository;
+    private final PlaylistAccessService playlistAccess;
+    private final MongoTemplate mongoTemplate;
+    private final PlaylistFacetService facetService;
+    private final FavoriteService favoriteService;
+    
+    // Order of movie listings, which favorites follow
+    private static final Comparator<MovieSummaryDto> LISTING_ORDER = Comparator
+            .comparing(MovieSummaryDto::getTitle, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(MovieSummaryDto::getId);
     
     /**
      * Get all movies for a playlist
      */
-    public List<Movie> getMoviesByPlaylist(String playlistId, String userId) {
-        // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        return movieRepository.findByPlaylistId(playlistId);
+    public List<MovieSummaryDto> getMoviesByPlaylist(String playlistId, String userId) {
+        PageResponse<MovieSummaryDto> response = getMoviesByPlaylistPaginated(playlistId, userId, 0, Integer.MAX_VALUE);
+        return response.getContent();
     }
     
     /**
      * Get all movies for a playlist with pagination
      */
-    public PageResponse<Movie> getMoviesByPlaylistPaginated(String playlistId, String userId, int page, int size) {
+    public PageResponse<MovieSummaryDto> getMoviesByPlaylistPaginated(String playlistId, String userId, int page, int size) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        List<Movie> allMovies = movieRepository.findByPlaylistId(playlistId);
-        return paginateMovieList(allMovies, page, size);
+        PageResponse<MovieSummaryDto> response = findPage(playlist, null, page, size);
+        response.setNextCursor(KeysetCursor.next(response, MovieSummaryDto::getTitle, MovieSummaryDto::getId));
+        return response;
     }
     
     /**
-     * Get movies by genre
+     * Get the movies of a playlist following a cursor
+     *
+     * @param cursor Cursor of the previous page, or blank for the first page
+     * @param includeTotal Whether to count all movies; without it only the presence of a next page is known
      */
-    public List<Movie> getMoviesByGenre(String playlistId, String genre, String userId) {
+    public PageResponse<MovieSummaryDto> getMoviesByPlaylistAfter(String playlistId, String userId, String cursor,
+                                                        int size, boolean includeTotal) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        return movieRepository.findByGenre(genre);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
+        
+        Query query = summary(new Query().addCriteria(PlaylistGenerationService.visibleIn(playlist)));
+        PageResponse<MovieSummaryDto> response = KeysetCursor.find(mongoTemplate, query, Movie.class,
+                MovieSummaryDto.class, "title", MovieSummaryDto::getTitle, MovieSummaryDto::getId, cursor, size,
+                includeTotal);
+        markFavorites(playlist, response.getContent());
+        return response;
+    }
+    
+    /**
+     * Get movies by genre
+     */
+    public List<MovieSummaryDto> getMoviesByGenre(String playlistId, String genre, String userId) {
+        PageResponse<MovieSummaryDto> response = getMoviesByGenrePaginated(playlistId, genre, userId, 0, Integer.MAX_VALUE);
+        return response.getContent();
     }
     
     /**
      * Get movies by genre with pagination
      */
-    public PageResponse<Movie> getMoviesByGenrePaginated(String playlistId, String genre, String userId, int page, int size) {
+    public PageResponse<MovieSummaryDto> getMoviesByGenrePaginated(String playlistId, String genre, String userId, int page, int size) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        List<Movie> allMoviesByGenre = movieRepository.findByGenre(genre);
-        return paginateMovieList(allMoviesByGenre, page, size);
+        return findPage(playlist, Criteria.where("genre").is(genre), page, size);
     }
     
     /**
      * Get a specific movie
      */
     public Optional<Movie> getMovie(String movieId, String userId) {
-        Optional<Movie> movieOpt = movieRepository.findById(movieId);
-        
-        return movieOpt.flatMap(movie -> {
-            // Verify the user owns the playlist the movie belongs to
-            return playlistRepository.findById(movie.getPlaylistId())
-                    .filter(playlist -> playlist.getUserId().equals(userId))
-                    .map(playlist -> movie);
-        });
+        return playlistAccess.findOwnedContent(new Query(Criteria.where("id").is(movieId)), userId,
+                Movie.class, Movie::getPlaylistId);
     }
     
     /**
-     * Toggle favorite status
+     * Get many movies at once, in request order, marking the ids not found
+     */
+    public List<BatchItemDto<Movie>> getMovies(List<String> movieIds, String userId) {
+        return playlistAccess.findOwnedContent(movieIds, userId, Movie.class, Movie::getId, Movie::getPlaylistId);
+    }
+    
+    /**
+     * Toggle favorite status; the movie document is not written
      */
     public Movie toggleFavorite(String movieId, String userId) {
         Movie movie = getMovie(movieId, userId)
                 .orElseThrow(() -> new RuntimeException("Movie not found or access denied"));
         
-        movie.setFavorite(!movie.getFavorite());
-        return movieRepository.save(movie);
+        String key = FavoriteService.key(movie.getPlaylistId(), movie.getFingerprint(),
+                movie.getStreamUrl(), movie.getTitle());
+        movie.setFavorite(favoriteService.toggle(userId, movie.getPlaylistId(), SearchHitDto.Type.MOVIE, key));
+        return movie;
     }
     
     /**
      * Get all favorite movies
      */
-    public List<Movie> getFavorites(String playlistId, String userId) {
-        // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        return movieRepository.findByPlaylistIdAndFavorite(playlistId, true);
+    public List<MovieSummaryDto> getFavorites(String playlistId, String userId) {
+        PageResponse<MovieSummaryDto> response = getFavoritesPaginated(playlistId, userId, 0, Integer.MAX_VALUE);
+        return response.getContent();
     }
     
     /**
-     * Get all favorite movies with pagination
+     * Get all favorite movies with pagination: the favorites of the playlist are fetched at once by fingerprint
      */
-    public PageResponse<Movie> getFavoritesPaginated(String playlistId, String userId, int page, int size) {
+    public PageResponse<MovieSummaryDto> getFavoritesPaginated(String playlistId, String userId, int page, int size) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
+        Set<String> favorites = favoriteService.keys(userId, playlistId, SearchHitDto.Type.MOVIE);
+        if (favorites.isEmpty()) {
+            return PageResponse.of(List.of(), page, size, 0);
         }
+        Query query = summary(new Query()
+                .addCriteria(PlaylistGenerationService.visibleIn(playlist))
+                .addCriteria(Criteria.where("fingerprint").in(favorites)));
+        List<MovieSummaryDto> movies = mongoTemplate.query(Movie.class).as(MovieSummaryDto.class).matching(query).all();
+        movies.forEach(movie -> movie.setFavorite(true));
         
-        List<Movie> favorites = movieRepository.findByPlaylistIdAndFavorite(playlistId, true);
-        return paginateMovieList(favorites, page, size);
+        return FavoriteService.page(movies, LISTING_ORDER, page, size);
     }
     
     /**
      * Search for movies by title
      */
-    public List<Movie> searchMovies(String query, String playlistId, String userId) {
-        // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        return movieRepository.findByTitleContainingIgnoreCase(query);
+    public List<MovieSummaryDto> searchMovies(String query, String playlistId, String userId) {
+        PageResponse<MovieSummaryDto> response = searchMoviesPaginated(query, playlistId, userId, 0, Integer.MAX_VALUE);
+        return response.getContent();
     }
     
     /**
      * Search for movies by title with pagination
      */
-    public PageResponse<Movie> searchMoviesPaginated(String query, String playlistId, String userId, int page, int size) {
+    public PageResponse<MovieSummaryDto> searchMoviesPaginated(String query, String playlistId, String userId, int page, int size) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        List<Movie> searchResults = movieRepository.findByTitleContainingIgnoreCase(query);
-        return paginateMovieList(searchResults, page, size);
+        return findPage(playlist, SearchService.matching(SearchTokens.tokenize(query)), page, size);
     }
     
     /**
@@ -181,33 +173,59 @@ public class MovieService {
      */
     public List<String> getMovieGenres(String playlistId, String userId) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        return movieRepository.findByPlaylistId(playlistId).stream()
-                .map(Movie::getGenre)
-                .distinct()
-                .sorted()
-                .toList();
+        return facetService.getValues(playlist, Movie.class, "genre");
     }
     
     /**
-     * Helper method to paginate a list of movies
+     * Get all available movie genres with the number of movies in each
      */
-    private PageResponse<Movie> paginateMovieList(List<Movie> movieList, int page, int size) {
-        int totalElements = movieList.size();
+    public List<FacetCountDto> getMovieGenreCounts(String playlistId, String userId) {
+        // Verify the user owns the playlist
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        // Avoid overflow
-        int fromIndex = Math.min(page * size, totalElements);
-        int toIndex = Math.min(fromIndex + size, totalElements);
+        return facetService.getFacets(playlist, Movie.class, "genre");
+    }
+    
+    /**
+     * Restrict a query to the fields listings show; the full movie is only read for the detail view
+     */
+    private static Query summary(Query query) {
+        query.fields().include("title", "genre", "thumbnailUrl", "streamUrl", "releaseYear", "duration", "fingerprint");
+        return query;
+    }
+    
+    /**
+     * One page of the content readers currently see, sorted by title, with the total count of the filter
+     *
+     * @param filter Additional criteria, or null for the whole playlist
+     */
+    private PageResponse<MovieSummaryDto> findPage(Playlist playlist, Criteria filter, int page, int size) {
+        Query query = new Query().addCriteria(PlaylistGenerationService.visibleIn(playlist));
+        if (filter != null) {
+            query.addCriteria(filter);
+        }
+        // The whole playlist is counted at import time
+        long total = filter == null && playlist.getMoviesCount() != null
+                ? playlist.getMoviesCount()
+                : mongoTemplate.count(query, Movie.class);
         
-        List<Movie> paginatedContent = movieList.subList(fromIndex, toIndex);
+        Pageable pageable = PageRequest.of(page, size, KeysetCursor.sort("title"));
+        List<MovieSummaryDto> content = mongoTemplate.query(Movie.class).as(MovieSummaryDto.class)
+                .matching(summary(query).with(pageable))
+                .all();
         
-        return PageResponse.of(paginatedContent, page, size, totalElements);
+        return PageResponse.of(markFavorites(playlist, content), page, size, total);
+    }
+    
+    /**
+     * Flag movies of a listing with the favorites of the owner
+     */
+    private List<MovieSummaryDto> markFavorites(Playlist playlist, List<MovieSummaryDto> movies) {
+        return favoriteService.mark(playlist, SearchHitDto.Type.MOVIE, movies,
+                movie -> FavoriteService.key(playlist.getId(), movie.getFingerprint(), movie.getStreamUrl(),
+                        movie.getTitle()),
+                MovieSummaryDto::setFavorite);
     }
 }
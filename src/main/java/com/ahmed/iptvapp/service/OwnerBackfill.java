@@ -0,0 +1,77 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Playlist;
+import com.ahmed.iptvapp.model.Series;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Stores the owner on content imported before owners were denormalized.
+ * Runs once in the background at startup, walking the playlists in _id order one batch at a time and
+ * updating each playlist's content on the server; content that already has an owner is left alone,
+ * so it is a no-op once everything is migrated.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OwnerBackfill {
+
+    private static final List<Class<?>> CONTENT_TYPES = List.of(Channel.class, Movie.class, Series.class);
+    private static final int BATCH_SIZE = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final Executor taskExecutor;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        taskExecutor.execute(() -> {
+            try {
+                backfill();
+            } catch (Exception e) {
+                // Next startup resumes with whatever is still missing
+                log.error("Failed to backfill content owners", e);
+            }
+        });
+    }
+
+    public void backfill() {
+        long updated = 0;
+        String lower = null;
+        while (true) {
+            Query query = new Query(lower == null ? new Criteria() : Criteria.where("id").gt(lower))
+                    .with(Sort.by("id"))
+                    .limit(BATCH_SIZE);
+            query.fields().include("userId");
+            List<Playlist> playlists = mongoTemplate.find(query, Playlist.class);
+            if (playlists.isEmpty()) {
+                break;
+            }
+
+            for (Playlist playlist : playlists) {
+                Query content = new Query(Criteria.where("playlistId").is(playlist.getId())
+                        .and("ownerId").exists(false));
+                for (Class<?> type : CONTENT_TYPES) {
+                    updated += mongoTemplate.updateMulti(content, Update.update("ownerId", playlist.getUserId()), type)
+                            .getModifiedCount();
+                }
+            }
+            lower = playlists.get(playlists.size() - 1).getId();
+        }
+        if (updated > 0) {
+            log.info("Backfilled the owner of {} content documents", updated);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.BatchItemDto;
+import com.ahmed.iptvapp.exception.BatchTooLargeException;
+import com.ahmed.iptvapp.model.Playlist;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Ownership checks of playlists, shared by every catalog and streaming call.
+ * The owner, current generation and counts of recently used playlists are kept in a bounded LRU map, so
+ * a request costs no playlist lookup of its own. Entries are dropped when the playlist is deleted or commits a
+ * generation on this node, and expire quickly enough for changes made by other nodes: the TTL stays below the
+ * garbage collection delay of retired generations, so a stale generation is never read after it is collected.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlaylistAccessService {
+    
+    private final MongoTemplate mongoTemplate;
+    
+    @Value("${app.access.cache-size:10000}")
+    private int cacheSize;
+    
+    @Value("${app.access.cache-ttl-seconds:10}")
+    private long cacheTtlSeconds;
+    
+    @Value("${app.batch.max-ids:100}")
+    private int maxBatchIds;
+    
+    private final Map<String, CachedPlaylist> playlists = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedPlaylist> eldest) {
+                    return size() > cacheSize;
+                }
+            });
+    
+    /**
+     * The playlist, if the user owns it.
+     * Only the owner, current generation and counts are loaded; the instance is shared and must not be modified.
+     *
+     * @throws RuntimeException if the playlist does not exist or belongs to someone else
+     */
+    public Playlist requireOwned(String playlistId, String userId) {
+        return findOwned(playlistId, userId)
+                .orElseThrow(() -> new RuntimeException("Access denied to playlist"));
+    }
+    
+    /**
+     * Whether the user owns the playlist; false for a missing playlist
+     */
+    public boolean owns(String playlistId, String userId) {
+        return playlistId != null && findOwned(playlistId, userId).isPresent();
+    }
+    
+    /**
+     * Load a channel, movie or series of the user in one query on its denormalized owner.
+     * Items imported before owners were stored fall back to an ownership check of their playlist.
+     *
+     * @param byId Query selecting the item by id, with any projection; the projection must keep playlistId
+     */
+    public <T> Optional<T> findOwnedContent(Query byId, String userId, Class<T> type, Function<T, String> playlistId) {
+        T owned = mongoTemplate.findOne(Query.of(byId).addCriteria(Criteria.where("ownerId").is(userId)), type);
+        if (owned != null) {
+            return Optional.of(owned);
+        }
+        
+        Query legacy = Query.of(byId).addCriteria(Criteria.where("ownerId").exists(false));
+        return Optional.ofNullable(mongoTemplate.findOne(legacy, type))
+                .filter(item -> owns(playlistId.apply(item), userId));
+    }
+    
+    /**
+     * Load many channels, movies or series of the user with one $in query on their denormalized owner,
+     * falling back as {@link #findOwnedContent(Query, String, Class, Function)} does for the ids left over
+     *
+     * @return one result per requested id, in request order, marking ids that were not found
+     * @throws BatchTooLargeException if more than app.batch.max-ids ids are requested
+     */
+    public <T> List<BatchItemDto<T>> findOwnedContent(List<String> ids, String userId, Class<T> type,
+                                                      Function<T, String> id, Function<T, String> playlistId) {
+        if (ids.size() > maxBatchIds) {
+            throw new BatchTooLargeException("At most " + maxBatchIds + " ids can be looked up at once");
+        }
+        Set<String> distinct = new LinkedHashSet<>(ids);
+        
+        Map<String, T> found = new HashMap<>();
+        Query owned = new Query(Criteria.where("id").in(distinct).and("ownerId").is(userId));
+        mongoTemplate.find(owned, type).forEach(item -> found.put(id.apply(item), item));
+        
+        List<String> missing = distinct.stream().filter(itemId -> !found.containsKey(itemId)).toList();
+        if (!missing.isEmpty()) {
+            Query legacy = new Query(Criteria.where("id").in(missing).and("ownerId").exists(false));
+            mongoTemplate.find(legacy, type).stream()
+                    .filter(item -> owns(playlistId.apply(item), userId))
+                    .forEach(item -> found.put(id.apply(item), item));
+        }
+        
+        return ids.stream()
+                .map(itemId -> found.containsKey(itemId)
+                        ? BatchItemDto.found(itemId, found.get(itemId))
+                        : BatchItemDto.<T>notFound(itemId))
+                .toList();
+    }
+    
+    /**
+     * Forget what is cached about a playlist after deleting it, changing its owner or committing a generation
+     */
+    public void invalidate(String playlistId) {
+        playlists.remove(playlistId);
+    }
+    
+    private Optional<Playlist> findOwned(String playlistId, String userId) {
+        return find(playlistId).filter(playlist -> playlist.getUserId().equals(userId));
+    }
+    
+    private Optional<Playlist> find(String playlistId) {
+        long now = System.nanoTime();
+        CachedPlaylist cached = playlists.get(playlistId);
+        if (cached != null && cached.expiresAt - now > 0) {
+            return Optional.of(cached.playlist);
+        }
+        
+        Query query = new Query(Criteria.where("id").is(playlistId));
+        query.fields().include("userId", "currentGeneration", "channelsCount", "moviesCount", "seriesCount");
+        Playlist playlist = mongoTemplate.findOne(query, Playlist.class);
+        if (playlist == null) {
+            // Not cached: the playlist may be created any moment
+            playlists.remove(playlistId);
+            return Optional.empty();
+        }
+        playlists.put(playlistId, new CachedPlaylist(playlist, now + TimeUnit.SECONDS.toNanos(cacheTtlSeconds)));
+        return Optional.of(playlist);
+    }
+    
+    private record CachedPlaylist(Playlist playlist, long expiresAt) {
+    }
+}
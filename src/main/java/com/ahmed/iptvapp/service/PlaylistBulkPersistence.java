@@ -0,0 +1,183 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Series;
+import com.mongodb.WriteConcern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Bulk persistence for playlist content.
+ * Writes are queued per collection into {@link BulkOperations} batches; a full batch is executed on the bulk
+ * write executor while the caller keeps filling the next one, so channels, movies and series are written in
+ * parallel. Content is always staged under a generation that readers do not see until it is committed, so
+ * staging writes use a relaxed write concern; the commit itself is the durable write.
+ */
+@Component
+public class PlaylistBulkPersistence {
+
+    private final MongoTemplate stagingTemplate;
+    private final Executor bulkWriteExecutor;
+    private final Map<Class<?>, Integer> batchSizes;
+
+    public PlaylistBulkPersistence(MongoTemplate mongoTemplate,
+                                   Executor bulkWriteExecutor,
+                                   @Value("${app.import.bulk.staging-write-concern:W1}") String stagingWriteConcern,
+                                   @Value("${app.import.bulk.batch-size:1000}") int batchSize,
+                                   @Value("${app.import.bulk.series-batch-size:100}") int seriesBatchSize) {
+        // Same database and mapping as the application template, only the write concern differs
+        this.stagingTemplate = new MongoTemplate(mongoTemplate.getMongoDatabaseFactory(), mongoTemplate.getConverter());
+        this.stagingTemplate.setWriteConcern(WriteConcern.valueOf(stagingWriteConcern));
+        this.bulkWriteExecutor = bulkWriteExecutor;
+        this.batchSizes = Map.of(
+                Channel.class, Math.max(1, batchSize),
+                Movie.class, Math.max(1, batchSize),
+                // Series documents embed their episodes, so fewer of them fit in a batch
+                Series.class, Math.max(1, seriesBatchSize));
+    }
+
+    /**
+     * Start a set of writes for one import
+     */
+    public Session openSession() {
+        return new Session();
+    }
+
+    /**
+     * Bulk writes of one import, batched per collection.
+     * Not thread-safe: meant to be fed by a single writer thread.
+     */
+    public class Session {
+
+        private final Map<Class<?>, CollectionBatch> batches = new LinkedHashMap<>();
+
+        public void insert(Class<?> entityType, Object document) {
+            batch(entityType).add(ops -> ops.insert(document), Counter.INSERTED);
+        }
+
+        public void updateOne(Class<?> entityType, Query query, Update update) {
+            batch(entityType).add(ops -> ops.updateOne(query, update), Counter.UPDATED);
+        }
+
+        public void updateMulti(Class<?> entityType, Query query, Update update) {
+            batch(entityType).add(ops -> ops.updateMulti(query, update), Counter.UPDATED);
+        }
+
+        public void upsert(Class<?> entityType, Query query, Update update) {
+            batch(entityType).add(ops -> ops.upsert(query, update), Counter.UPDATED);
+        }
+
+        /**
+         * Write everything queued for one collection and wait until it is persisted
+         */
+        public void flush(Class<?> entityType) {
+            batch(entityType).flush();
+        }
+
+        /**
+         * Write everything queued and wait until it is persisted
+         */
+        public void flush() {
+            batches.values().forEach(CollectionBatch::submit);
+            batches.values().forEach(CollectionBatch::await);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder summary = new StringBuilder();
+            batches.forEach((type, batch) -> summary.append(summary.isEmpty() ? "" : ", ")
+                    .append(type.getSimpleName()).append(": ").append(batch));
+            return summary.toString();
+        }
+
+        private CollectionBatch batch(Class<?> entityType) {
+            return batches.computeIfAbsent(entityType, CollectionBatch::new);
+        }
+    }
+
+    private enum Counter {
+        INSERTED, UPDATED
+    }
+
+    /**
+     * Pending writes for one collection, with at most one batch executing at a time.
+     * Series upserts append to documents created by earlier upserts, so series batches are ordered;
+     * everything else is unordered.
+     */
+    private class CollectionBatch {
+        private final Class<?> entityType;
+        private final BulkOperations.BulkMode mode;
+        private final int batchSize;
+        private BulkOperations operations;
+        private int pending;
+        private CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+        private long inserted;
+        private long updated;
+
+        CollectionBatch(Class<?> entityType) {
+            this.entityType = entityType;
+            this.mode = entityType == Series.class ? BulkOperations.BulkMode.ORDERED : BulkOperations.BulkMode.UNORDERED;
+            this.batchSize = batchSizes.getOrDefault(entityType, batchSizes.get(Channel.class));
+        }
+
+        void add(Consumer<BulkOperations> operation, Counter counter) {
+            if (operations == null) {
+                operations = stagingTemplate.bulkOps(mode, entityType);
+            }
+            operation.accept(operations);
+            if (counter == Counter.INSERTED) {
+                inserted++;
+            } else {
+                updated++;
+            }
+            if (++pending >= batchSize) {
+                submit();
+            }
+        }
+
+        /**
+         * Hand the current batch to the executor once the previous one is done
+         */
+        void submit() {
+            if (pending == 0) {
+                return;
+            }
+            await();
+            BulkOperations batch = operations;
+            operations = null;
+            pending = 0;
+            inFlight = CompletableFuture.runAsync(batch::execute, bulkWriteExecutor);
+        }
+
+        void await() {
+            try {
+                inFlight.join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Bulk write to " + entityType.getSimpleName() + " failed: "
+                        + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        void flush() {
+            submit();
+            await();
+        }
+
+        @Override
+        public String toString() {
+            return inserted + " inserted, " + updated + " updated";
+        }
+    }
+}
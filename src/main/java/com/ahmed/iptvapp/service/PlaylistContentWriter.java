@@ -0,0 +1,134 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Episode;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Series;
+import com.ahmed.iptvapp.service.m3u.M3UEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persists streamed playlist entries through bulk writes.
+ * At most one batch of channels, movies and episodes is held in memory,
+ * whatever the size of the playlist being imported.
+ * Everything is written under one generation, which readers only see once it is committed.
+ */
+@Slf4j
+public class PlaylistContentWriter implements PlaylistEntryWriter {
+
+    private final MongoTemplate mongoTemplate;
+    private final PlaylistBulkPersistence.Session bulk;
+    private final M3UParserService m3uParserService;
+    private final String playlistId;
+    private final String ownerId;
+    private final long generation;
+    private final int batchSize;
+
+    private final Map<String, List<M3UEntry>> episodes = new LinkedHashMap<>();
+    private int pendingEpisodes;
+
+    private long channelsCount;
+    private long moviesCount;
+
+    public PlaylistContentWriter(MongoTemplate mongoTemplate, PlaylistBulkPersistence.Session bulk,
+                                 M3UParserService m3uParserService, String playlistId, String ownerId,
+                                 long generation, int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.bulk = bulk;
+        this.m3uParserService = m3uParserService;
+        this.playlistId = playlistId;
+        this.ownerId = ownerId;
+        this.generation = generation;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public void accept(M3UEntry entry) {
+        switch (entry.getType()) {
+            case MOVIE -> {
+                Movie movie = m3uParserService.createMovie(playlistId, entry);
+                movie.setGeneration(generation);
+                movie.setOwnerId(ownerId);
+                bulk.insert(Movie.class, movie);
+                moviesCount++;
+            }
+            case EPISODE -> {
+                episodes.computeIfAbsent(entry.getSeriesName(), name -> new ArrayList<>()).add(entry);
+                if (++pendingEpisodes >= batchSize) {
+                    flushEpisodes();
+                }
+            }
+            default -> {
+                Channel channel = m3uParserService.createChannel(playlistId, entry);
+                channel.setGeneration(generation);
+                channel.setOwnerId(ownerId);
+                bulk.insert(Channel.class, channel);
+                channelsCount++;
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        flushEpisodes();
+        bulk.flush();
+        log.debug("Wrote playlist {} generation {}: {}", playlistId, generation, bulk);
+    }
+
+    @Override
+    public long getChannelsCount() {
+        return channelsCount;
+    }
+
+    @Override
+    public long getMoviesCount() {
+        return moviesCount;
+    }
+
+    @Override
+    public long getSeriesCount() {
+        return mongoTemplate.count(new Query(PlaylistGenerationService.visibleIn(playlistId, generation)), Series.class);
+    }
+
+    /**
+     * Append buffered episodes to their series, creating the series on first sight.
+     * Series attributes are taken from the first episode seen, as the in-memory parser does.
+     */
+    private void flushEpisodes() {
+        if (episodes.isEmpty()) {
+            return;
+        }
+
+        episodes.forEach((seriesName, entries) -> {
+            Series template = m3uParserService.createSeries(playlistId, entries.get(0));
+            List<Episode> batch = entries.stream()
+                    .map(entry -> m3uParserService.createEpisode(playlistId, entry))
+                    .toList();
+
+            Query query = new Query(Criteria.where("playlistId").is(playlistId)
+                    .and("title").is(seriesName)
+                    .and("generation").is(generation));
+            Update update = new Update()
+                    .setOnInsert("genre", template.getGenre())
+                    .setOnInsert("thumbnailUrl", template.getThumbnailUrl())
+                    .setOnInsert("attributes", template.getAttributes())
+                    .setOnInsert("contentHash", template.getContentHash())
+                    .setOnInsert("searchTokens", template.getSearchTokens())
+                    .setOnInsert("ownerId", ownerId);
+            bulk.upsert(Series.class, query, SeriesEpisodes.append(update, batch));
+        });
+
+        log.debug("Queued {} episodes across {} series for playlist {}", pendingEpisodes, episodes.size(), playlistId);
+        episodes.clear();
+        pendingEpisodes = 0;
+    }
+}
@@ -0,0 +1,111 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Playlist;
+import com.ahmed.iptvapp.model.Series;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content counts of playlists.
+ * Imports and refreshes store the counts on the playlist when they commit a generation; this fills in
+ * playlists that have none yet (imported before counts were stored) with a single aggregation over the
+ * three content collections, and stores the result so it is computed only once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlaylistCountService {
+
+    private static final String CHANNELS = "channels";
+    private static final String MOVIES = "movies";
+    private static final String SERIES = "series";
+
+    private final MongoTemplate mongoTemplate;
+    private final PlaylistAccessService playlistAccess;
+
+    /**
+     * Make sure every playlist carries its content counts
+     */
+    public void fillMissingCounts(List<Playlist> playlists) {
+        List<Playlist> missing = playlists.stream()
+                .filter(playlist -> playlist.getChannelsCount() == null
+                        || playlist.getMoviesCount() == null
+                        || playlist.getSeriesCount() == null)
+                .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Map<String, Map<String, Long>> counts = countContent(missing);
+        for (Playlist playlist : missing) {
+            Map<String, Long> playlistCounts = counts.getOrDefault(playlist.getId(), Map.of());
+            playlist.setChannelsCount(playlistCounts.getOrDefault(CHANNELS, 0L));
+            playlist.setMoviesCount(playlistCounts.getOrDefault(MOVIES, 0L));
+            playlist.setSeriesCount(playlistCounts.getOrDefault(SERIES, 0L));
+            storeCounts(playlist);
+        }
+    }
+
+    /**
+     * Count the visible content of the playlists in every collection at once:
+     * the movies and series are unioned into the channels, then grouped by playlist and collection.
+     */
+    private Map<String, Map<String, Long>> countContent(List<Playlist> playlists) {
+        Criteria visible = new Criteria().orOperator(playlists.stream()
+                .map(PlaylistGenerationService::visibleIn)
+                .toArray(Criteria[]::new));
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(visible),
+                tag(CHANNELS),
+                UnionWithOperation.unionWith(mongoTemplate.getCollectionName(Movie.class))
+                        .pipeline(Aggregation.match(visible), tag(MOVIES)),
+                UnionWithOperation.unionWith(mongoTemplate.getCollectionName(Series.class))
+                        .pipeline(Aggregation.match(visible), tag(SERIES)),
+                Aggregation.group("playlistId", "type").count().as("count"));
+
+        Map<String, Map<String, Long>> counts = new HashMap<>();
+        for (Document result : mongoTemplate.aggregate(aggregation,
+                mongoTemplate.getCollectionName(Channel.class), Document.class)) {
+            Document key = result.get("_id", Document.class);
+            counts.computeIfAbsent(key.getString("playlistId"), id -> new HashMap<>())
+                    .put(key.getString("type"), ((Number) result.get("count")).longValue());
+        }
+        log.debug("Counted the content of {} playlists", playlists.size());
+        return counts;
+    }
+
+    private static AggregationOperation tag(String type) {
+        return Aggregation.project("playlistId").and(LiteralOperators.valueOf(type).asLiteral()).as("type");
+    }
+
+    /**
+     * Store the counts, unless a refresh committed another generation meanwhile (it brings its own counts)
+     */
+    private void storeCounts(Playlist playlist) {
+        Query query = new Query(Criteria.where("id").is(playlist.getId())
+                .and("currentGeneration").is(playlist.getCurrentGeneration()));
+        Update update = new Update()
+                .set("channelsCount", playlist.getChannelsCount())
+                .set("moviesCount", playlist.getMoviesCount())
+                .set("seriesCount", playlist.getSeriesCount());
+        mongoTemplate.updateFirst(query, update, Playlist.class);
+        playlistAccess.invalidate(playlist.getId());
+    }
+}
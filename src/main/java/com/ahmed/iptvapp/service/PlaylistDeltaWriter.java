@@ -0,0 +1,359 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Episode;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Series;
+import com.ahmed.iptvapp.service.m3u.ContentFingerprint;
+import com.ahmed.iptvapp.service.m3u.M3UEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Refreshes the content of an existing playlist by diffing it against the streamed entries.
+ * The content visible in the previous generation is indexed by fingerprint up front; every streamed entry
+ * then either matches a document (left alone unless its content hash changed) or becomes an insert, and
+ * whatever is left unmatched at the end is retired. Changed documents are retired and re-inserted rather
+ * than updated in place, so readers of the previous generation never see a half-applied refresh.
+ * Only those changes are written, as bulk operations. Favorites are kept apart by fingerprint (see
+ * {@link FavoriteService}), so they carry over to the new copies untouched.
+ */
+@Slf4j
+public class PlaylistDeltaWriter implements PlaylistEntryWriter {
+
+    private final MongoTemplate mongoTemplate;
+    private final PlaylistBulkPersistence.Session bulk;
+    private final M3UParserService m3uParserService;
+    private final String playlistId;
+    private final String ownerId;
+    private final long generation;
+    private final int batchSize;
+
+    // Existing content by fingerprint; duplicates of the same entry queue up under one fingerprint
+    private final Map<String, Deque<Existing>> existingChannels = new HashMap<>();
+    private final Map<String, Deque<Existing>> existingMovies = new HashMap<>();
+    private final Map<String, ExistingSeries> existingSeries = new HashMap<>();
+    private final List<String> duplicateSeriesIds = new ArrayList<>();
+
+    // Episodes for the new generation of their series, written at each flush
+    private final Map<String, List<M3UEntry>> newEpisodes = new LinkedHashMap<>();
+    private int pendingEpisodes;
+
+    private long channelsCount;
+    private long moviesCount;
+
+    /**
+     * @param generation Generation to write, diffed against the content visible in the one before it
+     */
+    public PlaylistDeltaWriter(MongoTemplate mongoTemplate, PlaylistBulkPersistence.Session bulk,
+                               M3UParserService m3uParserService, String playlistId, String ownerId,
+                               long generation, int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.bulk = bulk;
+        this.m3uParserService = m3uParserService;
+        this.playlistId = playlistId;
+        this.ownerId = ownerId;
+        this.generation = generation;
+        this.batchSize = Math.max(1, batchSize);
+        loadExisting();
+    }
+
+    @Override
+    public void accept(M3UEntry entry) {
+        switch (entry.getType()) {
+            case MOVIE -> {
+                moviesCount++;
+                acceptMovie(entry);
+            }
+            case EPISODE -> acceptEpisode(entry);
+            default -> {
+                channelsCount++;
+                acceptChannel(entry);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        flushNewEpisodes();
+        // New series copies must exist before unchanged episodes are copied into them
+        bulk.flush(Series.class);
+
+        // Whatever was not matched by the stream is gone upstream
+        retireUnmatched(existingChannels, Channel.class);
+        retireUnmatched(existingMovies, Movie.class);
+        existingSeries.values().forEach(this::finishSeries);
+        duplicateSeriesIds.forEach(id -> bulk.updateOne(Series.class, byId(id), retire()));
+
+        bulk.flush();
+        log.info("Refreshed playlist {} into generation {}: {}", playlistId, generation, bulk);
+    }
+
+    @Override
+    public long getChannelsCount() {
+        return channelsCount;
+    }
+
+    @Override
+    public long getMoviesCount() {
+        return moviesCount;
+    }
+
+    @Override
+    public long getSeriesCount() {
+        return mongoTemplate.count(new Query(PlaylistGenerationService.visibleIn(playlistId, generation)), Series.class);
+    }
+
+    /**
+     * Index the fingerprints and content hashes of the content of the previous generation
+     */
+    private void loadExisting() {
+        Query channels = new Query(PlaylistGenerationService.visibleIn(playlistId, generation - 1));
+        channels.fields().include("fingerprint", "contentHash", "streamUrl", "name");
+        try (Stream<Channel> stream = mongoTemplate.stream(channels, Channel.class)) {
+            stream.forEach(channel -> index(existingChannels,
+                    fingerprint(channel.getFingerprint(), channel.getStreamUrl(), channel.getName()),
+                    new Existing(channel.getId(), channel.getContentHash())));
+        }
+
+        Query movies = new Query(PlaylistGenerationService.visibleIn(playlistId, generation - 1));
+        movies.fields().include("fingerprint", "contentHash", "streamUrl", "title");
+        try (Stream<Movie> stream = mongoTemplate.stream(movies, Movie.class)) {
+            stream.forEach(movie -> index(existingMovies,
+                    fingerprint(movie.getFingerprint(), movie.getStreamUrl(), movie.getTitle()),
+                    new Existing(movie.getId(), movie.getContentHash())));
+        }
+
+        Query series = new Query(PlaylistGenerationService.visibleIn(playlistId, generation - 1));
+        series.fields().include("title", "contentHash", "episodes.id", "episodes.fingerprint",
+                "episodes.contentHash", "episodes.streamUrl", "episodes.title");
+        try (Stream<Series> stream = mongoTemplate.stream(series, Series.class)) {
+            stream.forEach(this::indexSeries);
+        }
+    }
+
+    private void indexSeries(Series series) {
+        if (existingSeries.containsKey(series.getTitle())) {
+            // Left over from an import that did not merge series by title
+            duplicateSeriesIds.add(series.getId());
+            return;
+        }
+        ExistingSeries existing = new ExistingSeries(series.getId(), series.getContentHash());
+        for (Episode episode : series.getEpisodes()) {
+            index(existing.episodes,
+                    fingerprint(episode.getFingerprint(), episode.getStreamUrl(), episode.getTitle()),
+                    new Existing(episode.getId(), episode.getContentHash()));
+        }
+        existingSeries.put(series.getTitle(), existing);
+    }
+
+    private void acceptChannel(M3UEntry entry) {
+        Existing existing = match(existingChannels, entry);
+        if (existing != null && !existing.isStale(m3uParserService.contentHash(entry))) {
+            return;
+        }
+        Channel channel = m3uParserService.createChannel(playlistId, entry);
+        channel.setGeneration(generation);
+        channel.setOwnerId(ownerId);
+        if (existing != null) {
+            bulk.updateOne(Channel.class, byId(existing.id), retire());
+        }
+        bulk.insert(Channel.class, channel);
+    }
+
+    private void acceptMovie(M3UEntry entry) {
+        Existing existing = match(existingMovies, entry);
+        if (existing != null && !existing.isStale(m3uParserService.contentHash(entry))) {
+            return;
+        }
+        Movie movie = m3uParserService.createMovie(playlistId, entry);
+        movie.setGeneration(generation);
+        movie.setOwnerId(ownerId);
+        if (existing != null) {
+            bulk.updateOne(Movie.class, byId(existing.id), retire());
+        }
+        bulk.insert(Movie.class, movie);
+    }
+
+    /**
+     * Series are documents embedding their episodes: any change to one produces a new copy of the series
+     */
+    private void acceptEpisode(M3UEntry entry) {
+        ExistingSeries series = existingSeries.get(entry.getSeriesName());
+        if (series == null) {
+            appendEpisode(entry);
+            return;
+        }
+
+        if (series.template == null) {
+            // Series attributes follow the first episode seen, as on import
+            series.template = m3uParserService.createSeries(playlistId, entry);
+            series.changed = series.isStale(series.template.getContentHash());
+        }
+
+        Existing episode = match(series.episodes, entry);
+        if (episode != null && !episode.isStale(m3uParserService.contentHash(entry))) {
+            series.keptEpisodeIds.add(episode.id);
+        } else {
+            series.changed = true;
+            appendEpisode(entry);
+        }
+    }
+
+    private void appendEpisode(M3UEntry entry) {
+        newEpisodes.computeIfAbsent(entry.getSeriesName(), name -> new ArrayList<>()).add(entry);
+        if (++pendingEpisodes >= batchSize) {
+            flushNewEpisodes();
+        }
+    }
+
+    /**
+     * Push new episodes onto the new generation of their series, creating it on first sight
+     */
+    private void flushNewEpisodes() {
+        newEpisodes.forEach((seriesName, entries) -> {
+            Series template = m3uParserService.createSeries(playlistId, entries.get(0));
+            List<Episode> batch = entries.stream()
+                    .map(entry -> m3uParserService.createEpisode(playlistId, entry))
+                    .toList();
+
+            Update update = new Update()
+                    .setOnInsert("genre", template.getGenre())
+                    .setOnInsert("thumbnailUrl", template.getThumbnailUrl())
+                    .setOnInsert("attributes", template.getAttributes())
+                    .setOnInsert("contentHash", template.getContentHash())
+                    .setOnInsert("searchTokens", template.getSearchTokens())
+                    .setOnInsert("ownerId", ownerId);
+            bulk.upsert(Series.class, newSeriesQuery(seriesName), SeriesEpisodes.append(update, batch));
+        });
+        newEpisodes.clear();
+        pendingEpisodes = 0;
+    }
+
+    /**
+     * Retire a series that is gone or changed; a changed one gets its unchanged episodes copied to the
+     * new generation among the new ones, keeping their ids
+     */
+    private void finishSeries(ExistingSeries series) {
+        if (series.template == null) {
+            bulk.updateOne(Series.class, byId(series.id), retire());
+            return;
+        }
+        boolean episodesRemoved = series.episodes.values().stream().anyMatch(remaining -> !remaining.isEmpty());
+        if (!series.changed && !episodesRemoved) {
+            return;
+        }
+
+        List<Episode> kept = List.of();
+        if (!series.keptEpisodeIds.isEmpty()) {
+            Set<String> keptIds = new HashSet<>(series.keptEpisodeIds);
+            Series current = mongoTemplate.findById(series.id, Series.class);
+            kept = current == null ? List.of() : current.getEpisodes().stream()
+                    .filter(episode -> keptIds.contains(episode.getId()))
+                    .toList();
+        }
+
+        Update update = new Update()
+                .set("genre", series.template.getGenre())
+                .set("thumbnailUrl", series.template.getThumbnailUrl())
+                .set("contentHash", series.template.getContentHash())
+                .setOnInsert("attributes", series.template.getAttributes())
+                .setOnInsert("searchTokens", series.template.getSearchTokens())
+                .setOnInsert("ownerId", ownerId);
+        if (!kept.isEmpty()) {
+            SeriesEpisodes.append(update, kept);
+        }
+        bulk.upsert(Series.class, newSeriesQuery(series.template.getTitle()), update);
+        bulk.updateOne(Series.class, byId(series.id), retire());
+    }
+
+    private void retireUnmatched(Map<String, Deque<Existing>> existing, Class<?> entityType) {
+        List<String> ids = new ArrayList<>();
+        for (Deque<Existing> unmatched : existing.values()) {
+            for (Existing document : unmatched) {
+                ids.add(document.id);
+                if (ids.size() >= batchSize) {
+                    bulk.updateMulti(entityType, new Query(Criteria.where("id").in(ids)), retire());
+                    ids = new ArrayList<>();
+                }
+            }
+        }
+        if (!ids.isEmpty()) {
+            bulk.updateMulti(entityType, new Query(Criteria.where("id").in(ids)), retire());
+        }
+        existing.clear();
+    }
+
+    private Existing match(Map<String, Deque<Existing>> existing, M3UEntry entry) {
+        Deque<Existing> candidates = existing.get(ContentFingerprint.of(playlistId, entry.getStreamUrl(), entry.getTitle()));
+        return candidates == null ? null : candidates.pollFirst();
+    }
+
+    /**
+     * Stored fingerprint, or the one the document would have had for content imported before fingerprints
+     */
+    private String fingerprint(String stored, String streamUrl, String title) {
+        return stored != null ? stored : ContentFingerprint.of(playlistId, streamUrl, title);
+    }
+
+    private Query newSeriesQuery(String title) {
+        return new Query(Criteria.where("playlistId").is(playlistId)
+                .and("title").is(title)
+                .and("generation").is(generation));
+    }
+
+    private Update retire() {
+        return new Update().set("retiredGeneration", generation);
+    }
+
+    private static void index(Map<String, Deque<Existing>> index, String fingerprint, Existing existing) {
+        index.computeIfAbsent(fingerprint, key -> new ArrayDeque<>(1)).addLast(existing);
+    }
+
+    private static Query byId(String id) {
+        return new Query(Criteria.where("id").is(id));
+    }
+
+    /**
+     * An existing document (or embedded episode) and the content hash it was written with
+     */
+    private static class Existing {
+        final String id;
+        final String contentHash;
+
+        Existing(String id, String contentHash) {
+            this.id = id;
+            this.contentHash = contentHash;
+        }
+
+        boolean isStale(String currentHash) {
+            return !currentHash.equals(contentHash);
+        }
+    }
+
+    private static class ExistingSeries extends Existing {
+        final Map<String, Deque<Existing>> episodes = new HashMap<>();
+        final List<String> keptEpisodeIds = new ArrayList<>();
+        // Built from the first episode seen in the stream; null while the series has not been seen
+        Series template;
+        boolean changed;
+
+        ExistingSeries(String id, String contentHash) {
+            super(id, contentHash);
+        }
+    }
+}
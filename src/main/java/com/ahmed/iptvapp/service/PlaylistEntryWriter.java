@@ -0,0 +1,25 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.service.m3u.M3UEntry;
+
+import java.util.function.Consumer;
+
+/**
+ * Sink persisting the entries of a playlist as they are parsed
+ */
+public interface PlaylistEntryWriter extends Consumer<M3UEntry> {
+
+    /**
+     * Write whatever is still buffered; called once, after the last entry
+     */
+    void flush();
+
+    long getChannelsCount();
+
+    long getMoviesCount();
+
+    /**
+     * Number of distinct series in the playlist once everything is written
+     */
+    long getSeriesCount();
+}
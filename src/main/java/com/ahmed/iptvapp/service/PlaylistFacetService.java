@@ -0,0 +1,78 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.cache.CacheService;
+import com.ahmed.iptvapp.dto.FacetCountDto;
+import com.ahmed.iptvapp.model.Playlist;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Channel groups and genres of a playlist with their item counts.
+ * They are grouped by the server in one aggregation and cached under the generation they were computed for:
+ * the content of a generation never changes, and a refresh commits a new one, which is simply a new key.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlaylistFacetService {
+    
+    private static final String FACETS_CACHE_KEY = "facets:%s:%s:%s:%d";
+    private static final long CACHE_TTL_HOURS = 6;
+    
+    private final MongoTemplate mongoTemplate;
+    private final CacheService cacheService;
+    
+    /**
+     * Distinct values of a field over the content readers currently see, with their counts, sorted by value
+     *
+     * @param type Content type to group
+     * @param field Field to group by
+     */
+    public List<FacetCountDto> getFacets(Playlist playlist, Class<?> type, String field) {
+        long generation = PlaylistGenerationService.currentGeneration(playlist);
+        String cacheKey = String.format(FACETS_CACHE_KEY, playlist.getId(),
+                mongoTemplate.getCollectionName(type), field, generation);
+        
+        Optional<FacetCountDto[]> cached = cacheService.get(cacheKey, FacetCountDto[].class);
+        if (cached.isPresent()) {
+            return Arrays.asList(cached.get());
+        }
+        
+        List<FacetCountDto> facets = countBy(playlist, type, field);
+        cacheService.put(cacheKey, facets.toArray(FacetCountDto[]::new), CACHE_TTL_HOURS, TimeUnit.HOURS);
+        return facets;
+    }
+    
+    /**
+     * Distinct values of a field, without counts
+     */
+    public List<String> getValues(Playlist playlist, Class<?> type, String field) {
+        return getFacets(playlist, type, field).stream()
+                .map(FacetCountDto::getValue)
+                .toList();
+    }
+    
+    private List<FacetCountDto> countBy(Playlist playlist, Class<?> type, String field) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(PlaylistGenerationService.visibleIn(playlist)),
+                Aggregation.group(field).count().as("count"),
+                Aggregation.sort(Sort.Direction.ASC, "_id"));
+        
+        List<FacetCountDto> facets = mongoTemplate.aggregate(aggregation, type, Document.class).getMappedResults()
+                .stream()
+                .map(result -> new FacetCountDto(result.getString("_id"), ((Number) result.get("count")).longValue()))
+                .toList();
+        log.debug("Counted {} values of {} in playlist {}", facets.size(), field, playlist.getId());
+        return facets;
+    }
+}
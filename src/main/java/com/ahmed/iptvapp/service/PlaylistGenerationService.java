@@ -0,0 +1,191 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Playlist;
+import com.ahmed.iptvapp.model.Series;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Versioned playlist content.
+ * Every import or refresh writes under a new generation that readers do not see: new documents carry the
+ * generation, replaced ones are marked with it as their retiredGeneration. Committing flips the playlist's
+ * currentGeneration pointer in a single update, so readers switch from the old catalog to the new one at once,
+ * and the retired documents are collected in the background once in-flight reads are done with them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlaylistGenerationService {
+
+    private static final List<Class<?>> CONTENT_TYPES = List.of(Channel.class, Movie.class, Series.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final PlaylistPurgeService purgeService;
+    private final PlaylistAccessService playlistAccess;
+    private final Executor taskExecutor;
+
+    @Value("${app.import.generation.gc-delay-seconds:30}")
+    private long gcDelaySeconds;
+
+    @Value("${app.import.generation.lease-minutes:30}")
+    private long leaseMinutes;
+
+    /**
+     * Criteria matching the content of a playlist as of a generation.
+     * Content written before generations existed has neither field and is always visible.
+     */
+    public static Criteria visibleIn(String playlistId, long generation) {
+        return Criteria.where("playlistId").is(playlistId)
+                .and("generation").not().gt(generation)
+                .and("retiredGeneration").not().lte(generation);
+    }
+
+    /**
+     * Criteria matching the content readers currently see
+     */
+    public static Criteria visibleIn(Playlist playlist) {
+        return visibleIn(playlist.getId(), currentGeneration(playlist));
+    }
+
+    public static long currentGeneration(Playlist playlist) {
+        return playlist.getCurrentGeneration() == null ? 0 : playlist.getCurrentGeneration();
+    }
+
+    /**
+     * Reserve the next generation of a playlist for writing.
+     * Only one writer holds a playlist at a time; a reservation older than the lease is considered abandoned.
+     *
+     * @param fence Fencing token of the writer's import lease, see {@link ImportSingleFlight}
+     * @return the generation to write content under
+     * @throws IllegalStateException if another import or refresh of the playlist is running
+     */
+    public long begin(Playlist playlist, long fence) {
+        long current = currentGeneration(playlist);
+        long next = current + 1;
+        LocalDateTime now = LocalDateTime.now();
+
+        Query query = new Query(Criteria.where("id").is(playlist.getId())
+                .and("currentGeneration").is(playlist.getCurrentGeneration())
+                .orOperator(
+                        Criteria.where("pendingGeneration").is(null),
+                        Criteria.where("pendingSince").lt(now.minusMinutes(leaseMinutes))));
+        Update update = new Update()
+                .set("pendingGeneration", next)
+                .set("pendingSince", now)
+                .set("pendingFence", fence);
+
+        if (mongoTemplate.updateFirst(query, update, Playlist.class).getModifiedCount() == 0) {
+            throw new IllegalStateException("Playlist " + playlist.getId() + " is already being refreshed");
+        }
+        playlist.setPendingGeneration(next);
+        playlist.setPendingSince(now);
+        playlist.setPendingFence(fence);
+
+        // Undo whatever an abandoned writer left behind before reusing its generation
+        rollback(playlist.getId(), Criteria.where("generation").gt(current),
+                Criteria.where("retiredGeneration").gt(current));
+        return next;
+    }
+
+    /**
+     * Make a generation visible to readers and schedule collection of what it replaced.
+     * The counts of the new content are switched along with the generation, so they always match it.
+     * Both the generation and the fence must still be the writer's: once its lease lapsed, another writer may
+     * have reserved the same generation number.
+     */
+    public void commit(Playlist playlist, long generation, long fence, PlaylistImportPipeline.ImportResult counts) {
+        Query query = pendingOf(playlist.getId(), generation, fence);
+        Update update = new Update()
+                .set("currentGeneration", generation)
+                .set("channelsCount", counts.getChannelsCount())
+                .set("moviesCount", counts.getMoviesCount())
+                .set("seriesCount", counts.getSeriesCount())
+                .unset("pendingGeneration")
+                .unset("pendingSince")
+                .unset("pendingFence");
+
+        UpdateResult result = mongoTemplate.updateFirst(query, update, Playlist.class);
+        if (result.getModifiedCount() == 0) {
+            if (!mongoTemplate.exists(new Query(Criteria.where("id").is(playlist.getId())), Playlist.class)) {
+                // Deleted while importing: what this writer staged is not covered by the purge that deleted it
+                purgeService.purgePlaylist(playlist.getId());
+                throw new IllegalStateException("Playlist " + playlist.getId() + " was deleted");
+            }
+            // The lease expired and another writer owns the generation now; leave its content alone
+            throw new IllegalStateException("Lost the refresh lease on playlist " + playlist.getId());
+        }
+        playlist.setCurrentGeneration(generation);
+        playlist.setChannelsCount(counts.getChannelsCount());
+        playlist.setMoviesCount(counts.getMoviesCount());
+        playlist.setSeriesCount(counts.getSeriesCount());
+        playlist.setPendingGeneration(null);
+        playlist.setPendingSince(null);
+        playlist.setPendingFence(null);
+        playlistAccess.invalidate(playlist.getId());
+        log.info("Playlist {} now serving generation {}", playlist.getId(), generation);
+
+        // Give reads that started on the previous generation time to finish
+        CompletableFuture.runAsync(() -> collectGarbage(playlist.getId(), generation),
+                CompletableFuture.delayedExecutor(gcDelaySeconds, TimeUnit.SECONDS, taskExecutor));
+    }
+
+    /**
+     * Discard a generation that will never be committed and release the playlist.
+     * A writer that lost the playlist to another leaves the generation alone: it may be the other's now.
+     */
+    public void abort(String playlistId, long generation, long fence) {
+        Query query = pendingOf(playlistId, generation, fence);
+        if (!mongoTemplate.exists(query, Playlist.class)) {
+            log.warn("Generation {} of playlist {} is no longer held under fence {}", generation, playlistId, fence);
+            return;
+        }
+        rollback(playlistId, Criteria.where("generation").is(generation),
+                Criteria.where("retiredGeneration").is(generation));
+
+        mongoTemplate.updateFirst(query,
+                new Update().unset("pendingGeneration").unset("pendingSince").unset("pendingFence"), Playlist.class);
+        log.info("Discarded generation {} of playlist {}", generation, playlistId);
+    }
+
+    /**
+     * Delete content retired by a committed generation
+     */
+    void collectGarbage(String playlistId, long generation) {
+        try {
+            long deleted = purgeService.purge(playlistId, Criteria.where("retiredGeneration").lte(generation));
+            log.debug("Collected {} documents retired by generation {} of playlist {}", deleted, generation, playlistId);
+        } catch (Exception e) {
+            // Retired content is invisible, so failing here only wastes space until the next refresh
+            log.warn("Failed to collect retired content of playlist {}", playlistId, e);
+        }
+    }
+
+    private static Query pendingOf(String playlistId, long generation, long fence) {
+        return new Query(Criteria.where("id").is(playlistId)
+                .and("pendingGeneration").is(generation)
+                .and("pendingFence").is(fence));
+    }
+
+    private void rollback(String playlistId, Criteria written, Criteria retired) {
+        purgeService.purge(playlistId, written);
+        for (Class<?> type : CONTENT_TYPES) {
+            mongoTemplate.updateMulti(new Query(Criteria.where("playlistId").is(playlistId).andOperator(retired)),
+                    new Update().unset("retiredGeneration"), type);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.PlaylistImportResponse;
+import com.ahmed.iptvapp.service.m3u.M3UEntry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipelined playlist import: download and parse on the calling thread, persist on a writer thread.
+ * Parsed entries flow through a bounded queue, so network, CPU and database work overlap,
+ * and a slow database blocks the parser instead of growing the heap. When every writer thread is busy, the
+ * import writes what it parses on its own thread instead, so more imports than writers slow down rather than fail.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PlaylistImportPipeline {
+
+    private static final M3UEntry END_OF_STREAM = new M3UEntry();
+    private static final M3UEntry ABORTED = new M3UEntry();
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    private final M3UParserService m3uParserService;
+    private final MongoTemplate mongoTemplate;
+    private final PlaylistBulkPersistence bulkPersistence;
+    private final AsyncTaskTrackerService taskTrackerService;
+    private final Executor importWriterExecutor;
+
+    @Value("${app.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.import.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * Import a playlist body into the playlist.
+     *
+     * @param ownerId User owning the playlist, stored on every item
+     * @param generation Generation to write the content under
+     * @param contentLength Length of the body, or -1 if unknown
+     * @param taskId Task to report progress to, or null for synchronous imports
+     * @param progressFrom Progress reported when the download starts
+     * @param progressTo Progress reported once everything is persisted
+     */
+    public ImportResult importContent(String playlistId, String ownerId, long generation, InputStream content,
+                                      long contentLength, String taskId, int progressFrom, int progressTo)
+            throws IOException {
+        PlaylistEntryWriter writer = new PlaylistContentWriter(mongoTemplate, bulkPersistence.openSession(),
+                m3uParserService, playlistId, ownerId, generation, batchSize);
+        return run(playlistId, content, contentLength, writer, taskId, progressFrom, progressTo);
+    }
+
+    /**
+     * Refresh the content of a playlist from a new body, writing only what changed since the previous generation.
+     *
+     * @see #importContent(String, String, long, InputStream, long, String, int, int)
+     */
+    public ImportResult refreshContent(String playlistId, String ownerId, long generation, InputStream content,
+                                       long contentLength, String taskId, int progressFrom, int progressTo)
+            throws IOException {
+        PlaylistEntryWriter writer = new PlaylistDeltaWriter(mongoTemplate, bulkPersistence.openSession(),
+                m3uParserService, playlistId, ownerId, generation, batchSize);
+        return run(playlistId, content, contentLength, writer, taskId, progressFrom, progressTo);
+    }
+
+    private ImportResult run(String playlistId, InputStream content, long contentLength, PlaylistEntryWriter writer,
+                             String taskId, int progressFrom, int progressTo) throws IOException {
+        BlockingQueue<M3UEntry> queue = new ArrayBlockingQueue<>(Math.max(batchSize, queueCapacity));
+        ProgressReporter progress = new ProgressReporter(taskId, progressFrom, progressTo);
+
+        Thread importThread = Thread.currentThread();
+        AtomicBoolean inline = new AtomicBoolean();
+        CompletableFuture<Void> writerTask = CompletableFuture.runAsync(() -> {
+            if (Thread.currentThread() == importThread) {
+                // Handed back by a saturated writer pool (CallerRunsPolicy): draining here would wait on ourselves
+                inline.set(true);
+                return;
+            }
+            drain(queue, writer, progress);
+        }, importWriterExecutor);
+        if (inline.get()) {
+            return runInline(playlistId, content, contentLength, writer, progress, progressTo);
+        }
+
+        long entries;
+        boolean complete = false;
+        try {
+            entries = m3uParserService.parse(content, contentLength,
+                    entry -> enqueue(queue, entry, writerTask), progress::onDownload);
+            complete = true;
+        } finally {
+            // Always stop the writer, but flush only a complete playlist: a delta of a partial one deletes content
+            enqueue(queue, complete ? END_OF_STREAM : ABORTED, writerTask);
+        }
+
+        try {
+            writerTask.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to persist playlist content: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        return finish(playlistId, entries, writer, progress, progressTo);
+    }
+
+    /**
+     * Parse and persist on the calling thread, without a writer thread
+     */
+    private ImportResult runInline(String playlistId, InputStream content, long contentLength,
+                                   PlaylistEntryWriter writer, ProgressReporter progress, int progressTo)
+            throws IOException {
+        log.debug("No writer thread free, importing playlist {} on the calling thread", playlistId);
+        long entries = m3uParserService.parse(content, contentLength, entry -> {
+            writer.accept(entry);
+            progress.onPersisted(1);
+        }, progress::onDownload);
+        // Flushed only once complete, like the writer thread: a delta of a partial playlist deletes content
+        writer.flush();
+        return finish(playlistId, entries, writer, progress, progressTo);
+    }
+
+    private ImportResult finish(String playlistId, long entries, PlaylistEntryWriter writer,
+                                ProgressReporter progress, int progressTo) {
+        progress.publish(progressTo);
+        log.info("Imported {} entries into playlist {}", entries, playlistId);
+        return new ImportResult(entries, writer.getChannelsCount(), writer.getMoviesCount(), writer.getSeriesCount());
+    }
+
+    /**
+     * Put an entry on the queue, blocking while the writer is behind
+     */
+    private void enqueue(BlockingQueue<M3UEntry> queue, M3UEntry entry, CompletableFuture<Void> writerTask) {
+        try {
+            while (!queue.offer(entry, 1, TimeUnit.SECONDS)) {
+                if (writerTask.isDone()) {
+                    // The writer stopped early: surface its failure to abort the download
+                    if (entry != END_OF_STREAM && entry != ABORTED) {
+                        writerTask.join();
+                    }
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Playlist import interrupted", e);
+        }
+    }
+
+    /**
+     * Writer loop: take entries off the queue in batches until the end marker arrives
+     */
+    private void drain(BlockingQueue<M3UEntry> queue, PlaylistEntryWriter writer, ProgressReporter progress) {
+        List<M3UEntry> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+
+                int accepted = 0;
+                for (M3UEntry entry : batch) {
+                    if (entry == ABORTED) {
+                        return;
+                    }
+                    if (entry == END_OF_STREAM) {
+                        writer.flush();
+                        progress.onPersisted(accepted);
+                        return;
+                    }
+                    writer.accept(entry);
+                    accepted++;
+                }
+                progress.onPersisted(accepted);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Playlist writer interrupted", e);
+        }
+    }
+
+    /**
+     * Counts of what an import wrote
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ImportResult {
+        private final long entries;
+        private final long channelsCount;
+        private final long moviesCount;
+        private final long seriesCount;
+    }
+
+    /**
+     * Publishes task progress from download bytes and persisted entries, at most twice a second
+     */
+    private class ProgressReporter {
+        private final String taskId;
+        private final int progressFrom;
+        private final int progressTo;
+        private final AtomicLong persisted = new AtomicLong();
+        private volatile int downloadPercent;
+        private volatile long lastPublished;
+
+        ProgressReporter(String taskId, int progressFrom, int progressTo) {
+            this.taskId = taskId;
+            this.progressFrom = progressFrom;
+            this.progressTo = progressTo;
+        }
+
+        void onDownload(long bytesRead, long contentLength) {
+            if (contentLength > 0) {
+                downloadPercent = (int) Math.min(100, bytesRead * 100 / contentLength);
+            }
+            publishThrottled();
+        }
+
+        void onPersisted(int entries) {
+            persisted.addAndGet(entries);
+            publishThrottled();
+        }
+
+        private void publishThrottled() {
+            long now = System.currentTimeMillis();
+            if (taskId != null && now - lastPublished >= PROGRESS_INTERVAL_MILLIS) {
+                lastPublished = now;
+                // Keep the last few percent for the final flush
+                publish(progressFrom + (progressTo - progressFrom - 5) * downloadPercent / 100);
+            }
+        }
+
+        void publish(int progress) {
+            if (taskId != null) {
+                taskTrackerService.updateTaskStatus(taskId,
+                        PlaylistImportResponse.processing(taskId, progress, persisted.get()));
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.PlaylistImportResponse;
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Series;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.LongConsumer;
+
+/**
+ * Server-side deletion of playlist content.
+ * Documents are removed with deleteMany over consecutive _id ranges of a bounded size, so nothing is loaded
+ * into the JVM and no single delete holds the collection for long. Deleting a whole playlist runs on the purge
+ * executor and reports progress as a task.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlaylistPurgeService {
+
+    private static final List<Class<?>> CONTENT_TYPES = List.of(Channel.class, Movie.class, Series.class);
+    private static final String ID = "_id";
+
+    private final MongoTemplate mongoTemplate;
+    private final AsyncTaskTrackerService taskTrackerService;
+    private final Executor purgeExecutor;
+
+    @Value("${app.purge.chunk-size:5000}")
+    private int chunkSize;
+
+    /**
+     * Delete all content of a playlist in the background
+     *
+     * @return the task tracking the purge
+     */
+    public String purgePlaylist(String playlistId) {
+        String taskId = taskTrackerService.createTask();
+        purgeExecutor.execute(() -> purgeContent(playlistId, taskId));
+        return taskId;
+    }
+
+    /**
+     * Delete the content of a playlist matching the criteria, in chunks, on the calling thread
+     *
+     * @return the number of documents deleted
+     */
+    public long purge(String playlistId, Criteria criteria) {
+        long deleted = 0;
+        for (Class<?> type : CONTENT_TYPES) {
+            deleted += purge(type, scope(playlistId, criteria), count -> { });
+        }
+        return deleted;
+    }
+
+    private void purgeContent(String playlistId, String taskId) {
+        try {
+            Criteria content = Criteria.where("playlistId").is(playlistId);
+            long total = 0;
+            for (Class<?> type : CONTENT_TYPES) {
+                total += mongoTemplate.count(new Query(content), type);
+            }
+
+            Progress progress = new Progress(taskId, total);
+            for (Class<?> type : CONTENT_TYPES) {
+                purge(type, content, progress::onDeleted);
+            }
+
+            log.info("Purged {} documents of playlist {}", progress.deleted, playlistId);
+            taskTrackerService.updateTaskStatus(taskId,
+                    PlaylistImportResponse.completed(taskId, playlistId, progress.deleted));
+        } catch (Exception e) {
+            // Whatever is left is unreachable without its playlist; purging again picks up where this stopped
+            log.error("Failed to purge content of playlist {}", playlistId, e);
+            taskTrackerService.updateTaskStatus(taskId, PlaylistImportResponse.failed(taskId, e.getMessage()));
+        }
+    }
+
+    /**
+     * Walk the matching documents in _id order, deleting one range of at most chunkSize documents at a time
+     */
+    private long purge(Class<?> type, Criteria criteria, LongConsumer onDeleted) {
+        String collection = mongoTemplate.getCollectionName(type);
+        long deleted = 0;
+        Object lower = null;
+        while (true) {
+            // The last _id of the next chunk; the remainder is a single chunk when there is none
+            Query boundary = new Query(after(criteria, lower))
+                    .with(Sort.by(ID))
+                    .skip(Math.max(1, chunkSize) - 1)
+                    .limit(1);
+            boundary.fields().include(ID);
+            Document last = mongoTemplate.findOne(boundary, Document.class, collection);
+
+            Criteria range = last == null
+                    ? after(criteria, lower)
+                    : new Criteria().andOperator(after(criteria, lower), Criteria.where(ID).lte(last.get(ID)));
+            long count = mongoTemplate.remove(new Query(range), collection).getDeletedCount();
+            deleted += count;
+            onDeleted.accept(count);
+
+            if (last == null) {
+                return deleted;
+            }
+            lower = last.get(ID);
+        }
+    }
+
+    private static Criteria scope(String playlistId, Criteria criteria) {
+        return new Criteria().andOperator(Criteria.where("playlistId").is(playlistId), criteria);
+    }
+
+    private static Criteria after(Criteria criteria, Object lower) {
+        return lower == null ? criteria : new Criteria().andOperator(criteria, Criteria.where(ID).gt(lower));
+    }
+
+    /**
+     * Publishes purge progress to the task tracker
+     */
+    private class Progress {
+        private final String taskId;
+        private final long total;
+        private long deleted;
+
+        Progress(String taskId, long total) {
+            this.taskId = taskId;
+            this.total = total;
+        }
+
+        void onDeleted(long count) {
+            deleted += count;
+            int percent = total == 0 ? 100 : (int) Math.min(99, deleted * 100 / total);
+            taskTrackerService.updateTaskStatus(taskId, PlaylistImportResponse.processing(taskId, percent, deleted));
+        }
+    }
+}
@@ -2,30 +2,34 @@ package com.ahmed.iptvapp.service;
 
 import com.ahmed.iptvapp.cache.CacheService;
 import com.ahmed.iptvapp.cache.RateLimiter;
+import com.ahmed.iptvapp.dto.ImportQueueStatsDto;
 import com.ahmed.iptvapp.dto.PlaylistDto;
 import com.ahmed.iptvapp.dto.PlaylistImportResponse;
 import com.ahmed.iptvapp.dto.RateLimitStatus;
+import com.ahmed.iptvapp.exception.ImportInProgressException;
+import com.ahmed.iptvapp.exception.ImportQueueFullException;
 import com.ahmed.iptvapp.exception.RateLimitExceededException;
-import com.ahmed.iptvapp.model.Channel;
-import com.ahmed.iptvapp.model.Movie;
 import com.ahmed.iptvapp.model.Playlist;
-import com.ahmed.iptvapp.model.Series;
-import com.ahmed.iptvapp.repository.ChannelRepository;
-import com.ahmed.iptvapp.repository.MovieRepository;
 import com.ahmed.iptvapp.repository.PlaylistRepository;
-import com.ahmed.iptvapp.repository.SeriesRepository;
+import com.ahmed.iptvapp.service.m3u.PlaylistDownload;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -34,13 +38,21 @@ import java.util.stream.Collectors;
 public class PlaylistService {
 
     private final PlaylistRepository playlistRepository;
-    private final ChannelRepository channelRepository;
-    private final MovieRepository movieRepository;
-    private final SeriesRepository seriesRepository;
     private final M3UParserService m3uParserService;
     private final CacheService cacheService;
     private final AsyncTaskTrackerService taskTrackerService;
     private final RateLimiter rateLimiter;
+    private final PlaylistImportPipeline importPipeline;
+    private final PlaylistGenerationService generationService;
+    private final PlaylistPurgeService purgeService;
+    private final PlaylistCountService countService;
+    private final SuggestionService suggestionService;
+    private final PlaylistAccessService playlistAccess;
+    private final FavoriteService favoriteService;
+    private final WatchHistoryService watchHistoryService;
+    private final ImportScheduler importScheduler;
+    private final ImportSingleFlight singleFlight;
+    private final MongoTemplate mongoTemplate;
     
     // Rate limit resource identifier
     private static final String REFRESH_RATE_LIMIT_RESOURCE = "playlist-refresh";
@@ -48,9 +60,6 @@ public class PlaylistService {
     // Cache key patterns
     private static final String USER_PLAYLISTS_CACHE_KEY = "user:%s:playlists";
     private static final String PLAYLIST_CACHE_KEY = "playlist:%s";
-    private static final String PLAYLIST_CHANNELS_COUNT_CACHE_KEY = "playlist:%s:channels:count";
-    private static final String PLAYLIST_MOVIES_COUNT_CACHE_KEY = "playlist:%s:movies:count";
-    private static final String PLAYLIST_SERIES_COUNT_CACHE_KEY = "playlist:%s:series:count";
 
     /**
      * Get all playlists for a user
@@ -65,8 +74,10 @@ public class PlaylistService {
             return (List<PlaylistDto>) cachedPlaylists.get();
         }
         
-        // Not in cache, get from database
-        List<PlaylistDto> playlists = playlistRepository.findByUserId(userId).stream()
+        // Not in cache, get from database; counts missing on older playlists are computed in one query
+        List<Playlist> userPlaylists = playlistRepository.findByUserId(userId);
+        countService.fillMissingCounts(userPlaylists);
+        List<PlaylistDto> playlists = userPlaylists.stream()
                 .map(this::convertToDto)
                 .collect(Collectors.toList());
         
@@ -108,9 +119,11 @@ public class PlaylistService {
      */
     @Transactional
     public PlaylistDto createFromUrl(String url, String userId) {
+        ImportSingleFlight.Flight flight = lead(ImportSingleFlight.urlKey(userId, url), "This URL");
+        PlaylistDto playlistDto = null;
         try {
-            Playlist playlist = m3uParserService.parseFromUrl(url, userId);
-            PlaylistDto playlistDto = savePlaylistWithContent(playlist);
+            Playlist playlist = m3uParserService.createPlaylist(url, userId);
+            playlistDto = savePlaylistWithContent(playlist, flight, 0, 100);
             
             // Invalidate user playlists cache
             cacheService.remove(String.format(USER_PLAYLISTS_CACHE_KEY, userId));
@@ -119,26 +132,29 @@ public class PlaylistService {
         } catch (IOException e) {
             log.error("Error creating playlist from URL: {}", url, e);
             throw new RuntimeException("Failed to load playlist from URL: " + e.getMessage());
+        } finally {
+            land(flight, playlistDto);
         }
     }
     
     /**
-     * Create a new playlist from URL - Asynchronous version
+     * Create a new playlist from URL - Asynchronous version, queued ahead of refreshes.
+     * While an import of the same URL by the user is running, its task is returned instead of starting another.
      */
-    @Async("taskExecutor")
-    public CompletableFuture<PlaylistImportResponse> createFromUrlAsync(String url, String userId, String taskId) {
+    public PlaylistImportResponse createFromUrlAsync(String url, String userId) {
+        return schedule(ImportSingleFlight.urlKey(userId, url), userId, ImportScheduler.Priority.INTERACTIVE,
+                flight -> importFromUrl(url, userId, flight));
+    }
+
+    private PlaylistImportResponse importFromUrl(String url, String userId, ImportSingleFlight.Flight flight) {
+        String taskId = flight.taskId();
         try {
             // Update status to processing
             taskTrackerService.updateTaskStatus(taskId, PlaylistImportResponse.processing(taskId, 10));
             
-            // Parse the playlist
-            Playlist playlist = m3uParserService.parseFromUrl(url, userId);
-            
-            // Update progress
-            taskTrackerService.updateTaskStatus(taskId, PlaylistImportResponse.processing(taskId, 50));
-            
-            // Save the playlist with content
-            PlaylistDto playlistDto = savePlaylistWithContent(playlist);
+            // Stream the playlist content straight into the database, reporting progress as it goes
+            Playlist playlist = m3uParserService.createPlaylist(url, userId);
+            PlaylistDto playlistDto = savePlaylistWithContent(playlist, flight, 10, 95);
             
             // Invalidate user playlists cache
             cacheService.remove(String.format(USER_PLAYLISTS_CACHE_KEY, userId));
@@ -149,12 +165,12 @@ public class PlaylistService {
             // Update status to completed
             taskTrackerService.updateTaskStatus(taskId, response);
             
-            return CompletableFuture.completedFuture(response);
+            return response;
         } catch (Exception e) {
             log.error("Error creating playlist from URL: {}", url, e);
             PlaylistImportResponse failedResponse = PlaylistImportResponse.failed(taskId, e.getMessage());
             taskTrackerService.updateTaskStatus(taskId, failedResponse);
-            return CompletableFuture.completedFuture(failedResponse);
+            return failedResponse;
         }
     }
 
@@ -182,8 +198,12 @@ public class PlaylistService {
             }
         }
         
-        Playlist savedPlaylist = playlistRepository.save(playlist);
-        PlaylistDto updatedDto = convertToDto(savedPlaylist);
+        // Only touch the edited fields, so a concurrent refresh's generation flip is never overwritten
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(playlistId)), new Update()
+                .set("name", playlist.getName())
+                .set("active", playlist.getActive())
+                .set("updatedAt", playlist.getUpdatedAt()), Playlist.class);
+        PlaylistDto updatedDto = convertToDto(playlist);
         
         // Update cache
         cacheService.put(String.format(PLAYLIST_CACHE_KEY, playlistId), updatedDto);
@@ -199,71 +219,37 @@ public class PlaylistService {
      */
     @Transactional
     public PlaylistDto refreshPlaylist(String playlistId, String userId) {
-        // Check rate limit before proceeding
-        if (!rateLimiter.allowRequest(userId, REFRESH_RATE_LIMIT_RESOURCE)) {
-            long retryAfter = rateLimiter.getTimeToNextAllowedRequest(userId, REFRESH_RATE_LIMIT_RESOURCE);
-            throw new RateLimitExceededException(
-                    "Rate limit exceeded for playlist refresh. Please try again later.", 
-                    retryAfter);
-        }
-        
-        Playlist playlist = playlistRepository.findById(playlistId)
-                .filter(p -> p.getUserId().equals(userId))
-                .orElseThrow(() -> new RuntimeException("Playlist not found"));
-
-        if (playlist.getUrl() == null || playlist.getUrl().isEmpty()) {
-            throw new RuntimeException("Cannot refresh a playlist without URL");
-        }
+        Playlist playlist = refreshablePlaylist(playlistId, userId);
 
+        ImportSingleFlight.Flight flight = lead(ImportSingleFlight.playlistKey(playlistId), "This playlist");
+        PlaylistDto refreshedDto = null;
         try {
-            // Delete existing content
-            channelRepository.deleteAll(channelRepository.findByPlaylistId(playlistId));
-            movieRepository.deleteAll(movieRepository.findByPlaylistId(playlistId));
-            seriesRepository.deleteAll(seriesRepository.findByPlaylistId(playlistId));
-
-            // Re-parse from URL
-            Playlist refreshedPlaylist = m3uParserService.parseFromUrl(playlist.getUrl(), userId);
-            refreshedPlaylist.setId(playlistId);
-            refreshedPlaylist.setName(playlist.getName());
-            refreshedPlaylist.setCreatedAt(playlist.getCreatedAt());
-            refreshedPlaylist.setLastRefreshed(LocalDateTime.now());
-            
-            PlaylistDto refreshedDto = savePlaylistWithContent(refreshedPlaylist);
-            
-            // Clear caches related to this playlist
-            invalidatePlaylistCaches(playlistId, userId);
-            
+            refreshedDto = refreshContent(playlist, flight, 0, 100);
             return refreshedDto;
         } catch (IOException e) {
             log.error("Error refreshing playlist", e);
             throw new RuntimeException("Failed to refresh playlist: " + e.getMessage());
+        } finally {
+            land(flight, refreshedDto);
         }
     }
     
     /**
-     * Refresh playlist content from its URL - Asynchronous version
+     * Refresh playlist content from its URL - Asynchronous version, queued behind first imports.
+     * While the playlist is being refreshed, the running task is returned instead of starting another.
      * Now with rate limiting
      */
-    @Async("taskExecutor")
-    public CompletableFuture<PlaylistImportResponse> refreshPlaylistAsync(String playlistId, String userId, String taskId) {
+    public PlaylistImportResponse refreshPlaylistAsync(String playlistId, String userId) {
+        // Checked before joining, so only the owner's refreshes ever hold or join the playlist's task
+        refreshablePlaylist(playlistId, userId);
+        return schedule(ImportSingleFlight.playlistKey(playlistId), userId, ImportScheduler.Priority.BACKGROUND,
+                flight -> refreshFromUrl(playlistId, userId, flight));
+    }
+
+    private PlaylistImportResponse refreshFromUrl(String playlistId, String userId, ImportSingleFlight.Flight flight) {
+        String taskId = flight.taskId();
         try {
-            // Check rate limit before proceeding
-            if (!rateLimiter.allowRequest(userId, REFRESH_RATE_LIMIT_RESOURCE)) {
-                long retryAfter = rateLimiter.getTimeToNextAllowedRequest(userId, REFRESH_RATE_LIMIT_RESOURCE);
-                PlaylistImportResponse rateLimitExceededResponse = PlaylistImportResponse.builder()
-                        .taskId(taskId)
-                        .status("RATE_LIMITED")
-                        .progress(0)
-                        .startTime(LocalDateTime.now())
-                        .endTime(LocalDateTime.now())
-                        .errorMessage("Rate limit exceeded for playlist refresh. Please try again after " + 
-                                      retryAfter + " seconds.")
-                        .build();
-                
-                taskTrackerService.updateTaskStatus(taskId, rateLimitExceededResponse);
-                return CompletableFuture.completedFuture(rateLimitExceededResponse);
-            }
-            
+            // Read again: the playlist may have been deleted or edited while the refresh was queued
             Playlist playlist = playlistRepository.findById(playlistId)
                     .filter(p -> p.getUserId().equals(userId))
                     .orElseThrow(() -> new RuntimeException("Playlist not found"));
@@ -275,28 +261,7 @@ public class PlaylistService {
             // Update status to processing
             taskTrackerService.updateTaskStatus(taskId, PlaylistImportResponse.processing(taskId, 10));
             
-            // Delete existing content
-            channelRepository.deleteAll(channelRepository.findByPlaylistId(playlistId));
-            movieRepository.deleteAll(movieRepository.findByPlaylistId(playlistId));
-            seriesRepository.deleteAll(seriesRepository.findByPlaylistId(playlistId));
-            
-            // Update progress
-            taskTrackerService.updateTaskStatus(taskId, PlaylistImportResponse.processing(taskId, 30));
-
-            // Re-parse from URL
-            Playlist refreshedPlaylist = m3uParserService.parseFromUrl(playlist.getUrl(), userId);
-            refreshedPlaylist.setId(playlistId);
-            refreshedPlaylist.setName(playlist.getName());
-            refreshedPlaylist.setCreatedAt(playlist.getCreatedAt());
-            refreshedPlaylist.setLastRefreshed(LocalDateTime.now());
-            
-            // Update progress
-            taskTrackerService.updateTaskStatus(taskId, PlaylistImportResponse.processing(taskId, 70));
-            
-            PlaylistDto refreshedDto = savePlaylistWithContent(refreshedPlaylist);
-            
-            // Clear caches related to this playlist
-            invalidatePlaylistCaches(playlistId, userId);
+            PlaylistDto refreshedDto = refreshContent(playlist, flight, 30, 95);
             
             // Create completed response
             PlaylistImportResponse response = PlaylistImportResponse.completed(taskId, playlistId, refreshedDto);
@@ -304,71 +269,254 @@ public class PlaylistService {
             // Update status to completed
             taskTrackerService.updateTaskStatus(taskId, response);
             
-            return CompletableFuture.completedFuture(response);
+            return response;
         } catch (Exception e) {
             log.error("Error refreshing playlist", e);
             PlaylistImportResponse failedResponse = PlaylistImportResponse.failed(taskId, e.getMessage());
             taskTrackerService.updateTaskStatus(taskId, failedResponse);
-            return CompletableFuture.completedFuture(failedResponse);
+            return failedResponse;
         }
     }
 
     /**
-     * Delete a playlist and all its content
+     * Playlist of a user about to be refreshed, counting the refresh against the user's rate limit
+     *
+     * @throws RateLimitExceededException if the user refreshed too often
      */
-    @Transactional
-    public void deletePlaylist(String playlistId, String userId) {
+    private Playlist refreshablePlaylist(String playlistId, String userId) {
+        // Check rate limit before proceeding
+        if (!rateLimiter.allowRequest(userId, REFRESH_RATE_LIMIT_RESOURCE)) {
+            long retryAfter = rateLimiter.getTimeToNextAllowedRequest(userId, REFRESH_RATE_LIMIT_RESOURCE);
+            throw new RateLimitExceededException(
+                    "Rate limit exceeded for playlist refresh. Please try again later.", 
+                    retryAfter);
+        }
+        
         Playlist playlist = playlistRepository.findById(playlistId)
                 .filter(p -> p.getUserId().equals(userId))
                 .orElseThrow(() -> new RuntimeException("Playlist not found"));
 
-        // Delete all related content
-        channelRepository.deleteAll(channelRepository.findByPlaylistId(playlistId));
-        movieRepository.deleteAll(movieRepository.findByPlaylistId(playlistId));
-        seriesRepository.deleteAll(seriesRepository.findByPlaylistId(playlistId));
-        
-        // Delete the playlist
+        if (playlist.getUrl() == null || playlist.getUrl().isEmpty()) {
+            throw new RuntimeException("Cannot refresh a playlist without URL");
+        }
+        return playlist;
+    }
+
+    /**
+     * Queue an import of a key on the import scheduler, unless one is already running or queued.
+     * An import that is rejected fails its task before the rejection is thrown.
+     *
+     * @return the status of the new task, or of the one already running
+     */
+    private PlaylistImportResponse schedule(String key, String userId, ImportScheduler.Priority priority,
+                                            Function<ImportSingleFlight.Flight, PlaylistImportResponse> work) {
+        ImportSingleFlight.Flight flight = singleFlight.join(key);
+        if (!flight.isLeader()) {
+            return singleFlight.status(flight);
+        }
+        try {
+            importScheduler.submit(userId, priority, () -> {
+                try {
+                    return work.apply(flight);
+                } finally {
+                    singleFlight.land(flight);
+                }
+            });
+        } catch (ImportQueueFullException e) {
+            taskTrackerService.updateTaskStatus(flight.taskId(), PlaylistImportResponse.failed(flight.taskId(), e.getMessage()));
+            singleFlight.land(flight);
+            throw e;
+        }
+        return PlaylistImportResponse.pending(flight.taskId());
+    }
+
+    /**
+     * Lead the import of a key for a synchronous call, which cannot follow one already running
+     *
+     * @param what What is imported, for the message if it already is
+     * @throws ImportInProgressException if an import of the key is running
+     */
+    private ImportSingleFlight.Flight lead(String key, String what) {
+        ImportSingleFlight.Flight flight = singleFlight.join(key);
+        if (!flight.isLeader()) {
+            throw new ImportInProgressException(
+                    what + " is already being imported as task " + flight.taskId(), flight.taskId());
+        }
+        return flight;
+    }
+
+    /**
+     * End a synchronous import, reporting how it ended to the callers that joined it
+     *
+     * @param result Imported playlist, or null if the import failed
+     */
+    private void land(ImportSingleFlight.Flight flight, PlaylistDto result) {
+        String taskId = flight.taskId();
+        taskTrackerService.updateTaskStatus(taskId, result != null
+                ? PlaylistImportResponse.completed(taskId, result.getId(), result)
+                : PlaylistImportResponse.failed(taskId, "Import failed"));
+        singleFlight.land(flight);
+    }
+
+    /**
+     * Queue depth, waits and rejections of the import scheduler
+     */
+    public ImportQueueStatsDto getImportQueueStats() {
+        return importScheduler.getStats();
+    }
+
+    /**
+     * Delete a playlist; its content is purged in the background
+     *
+     * @return the task tracking the purge of the content
+     */
+    public String deletePlaylist(String playlistId, String userId) {
+        Playlist playlist = playlistRepository.findById(playlistId)
+                .filter(p -> p.getUserId().equals(userId))
+                .orElseThrow(() -> new RuntimeException("Playlist not found"));
+
+        // Delete the playlist first: its content is unreachable from then on, however long the purge takes
         playlistRepository.delete(playlist);
         
         // Clear caches related to this playlist
         invalidatePlaylistCaches(playlistId, userId);
+        playlistAccess.invalidate(playlistId);
+        suggestionService.evict(playlistId);
+        favoriteService.forgetPlaylist(playlist);
+        watchHistoryService.forgetPlaylist(playlist);
+
+        return purgeService.purgePlaylist(playlistId);
     }
 
     /**
-     * Save playlist and its related content
+     * Save playlist and stream its related content from the playlist URL.
+     * Download, parsing and persistence run as a pipeline, so the playlist is never fully held in memory.
+     *
+     * @param flight Import leading the URL: its task gets the progress, its fence guards the generation
      */
-    private PlaylistDto savePlaylistWithContent(Playlist playlist) {
-        // First save the playlist to get an ID
-        Playlist savedPlaylist = playlistRepository.save(playlist);
-        String playlistId = savedPlaylist.getId();
-        
-        // Set the playlist ID for all content
-        List<Channel> channels = savedPlaylist.getChannels();
-        List<Movie> movies = savedPlaylist.getMovies();
-        List<Series> series = savedPlaylist.getSeries();
-        
-        // Set the playlist ID
-        channels.forEach(channel -> channel.setPlaylistId(playlistId));
-        movies.forEach(movie -> movie.setPlaylistId(playlistId));
-        series.forEach(s -> s.setPlaylistId(playlistId));
-        
-        // Save the content
-        if (!channels.isEmpty()) {
-            channelRepository.saveAll(channels);
+    private PlaylistDto savePlaylistWithContent(Playlist playlist, ImportSingleFlight.Flight flight,
+                                                int progressFrom, int progressTo) throws IOException {
+        String taskId = flight.taskId();
+        try (PlaylistDownload download = PlaylistDownload.open(playlist.getUrl())) {
+            // First save the playlist to get an ID; its content stays invisible until the first generation commits
+            Playlist savedPlaylist = playlistRepository.save(playlist);
+            String playlistId = savedPlaylist.getId();
+            long generation = generationService.begin(savedPlaylist, flight.fence());
+            
+            PlaylistImportPipeline.ImportResult result;
+            try {
+                result = importPipeline.importContent(playlistId, savedPlaylist.getUserId(), generation,
+                        download.getInputStream(), download.getContentLength(), taskId, progressFrom, progressTo);
+            } catch (IOException | RuntimeException e) {
+                generationService.abort(playlistId, generation, flight.fence());
+                throw e;
+            }
+            generationService.commit(savedPlaylist, generation, flight.fence(), result);
+            suggestionService.onCommitted(savedPlaylist);
+            
+            // Remember the validators so the next refresh can be conditional
+            rememberFetch(savedPlaylist, download);
+            saveFetchState(savedPlaylist);
+            return cacheImportedPlaylist(savedPlaylist);
         }
+    }
+    
+    /**
+     * Refresh a playlist from its URL, unless the source has not changed since the last fetch.
+     * The request is conditional on the stored ETag/Last-Modified; when the server ignores those,
+     * the body is spooled to disk and its hash compared with the stored one before anything is written.
+     *
+     * @param flight Import leading the playlist: its task gets the progress, its fence guards the generation
+     */
+    private PlaylistDto refreshContent(Playlist playlist, ImportSingleFlight.Flight flight,
+                                       int progressFrom, int progressTo) throws IOException {
+        String playlistId = playlist.getId();
+        String taskId = flight.taskId();
         
-        if (!movies.isEmpty()) {
-            movieRepository.saveAll(movies);
+        try (PlaylistDownload download = PlaylistDownload.open(
+                playlist.getUrl(), playlist.getEtag(), playlist.getLastModified())) {
+            if (download.isNotModified()) {
+                log.info("Playlist {} not modified since last fetch, skipping re-import", playlistId);
+                return markUnchanged(playlist);
+            }
+            
+            Path content = download.spoolToTempFile();
+            try {
+                if (download.getContentHash().equals(playlist.getContentHash())) {
+                    log.info("Playlist {} content unchanged, skipping re-import", playlistId);
+                    rememberFetch(playlist, download);
+                    return markUnchanged(playlist);
+                }
+                
+                // Write the differences with the stored content as a new generation, then switch readers to it
+                long generation = generationService.begin(playlist, flight.fence());
+                PlaylistImportPipeline.ImportResult result;
+                try (InputStream in = Files.newInputStream(content)) {
+                    result = importPipeline.refreshContent(playlistId, playlist.getUserId(), generation,
+                            in, Files.size(content), taskId, progressFrom, progressTo);
+                } catch (IOException | RuntimeException e) {
+                    generationService.abort(playlistId, generation, flight.fence());
+                    throw e;
+                }
+                generationService.commit(playlist, generation, flight.fence(), result);
+                suggestionService.onCommitted(playlist);
+                invalidatePlaylistCaches(playlistId, playlist.getUserId());
+                
+                LocalDateTime now = LocalDateTime.now();
+                playlist.setLastRefreshed(now);
+                playlist.setUpdatedAt(now);
+                rememberFetch(playlist, download);
+                saveFetchState(playlist);
+                return cacheImportedPlaylist(playlist);
+            } finally {
+                Files.deleteIfExists(content);
+            }
         }
+    }
+    
+    /**
+     * Record a refresh that found nothing new: only the refresh time changes
+     */
+    private PlaylistDto markUnchanged(Playlist playlist) {
+        playlist.setLastRefreshed(LocalDateTime.now());
+        saveFetchState(playlist);
         
-        if (!series.isEmpty()) {
-            seriesRepository.saveAll(series);
-        }
+        cacheService.remove(String.format(PLAYLIST_CACHE_KEY, playlist.getId()));
+        cacheService.remove(String.format(USER_PLAYLISTS_CACHE_KEY, playlist.getUserId()));
         
-        PlaylistDto dto = convertToDto(savedPlaylist);
+        return convertToDto(playlist);
+    }
+    
+    /**
+     * Persist the fetch validators and refresh times of a playlist, leaving its generation pointers alone
+     */
+    private void saveFetchState(Playlist playlist) {
+        Update update = new Update()
+                .set("etag", playlist.getEtag())
+                .set("lastModified", playlist.getLastModified())
+                .set("contentHash", playlist.getContentHash())
+                .set("lastRefreshed", playlist.getLastRefreshed())
+                .set("updatedAt", playlist.getUpdatedAt());
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(playlist.getId())), update, Playlist.class);
+    }
+    
+    /**
+     * Copy the validators and content hash of a completed download onto the playlist
+     */
+    private void rememberFetch(Playlist playlist, PlaylistDownload download) {
+        playlist.setEtag(download.getEtag());
+        playlist.setLastModified(download.getLastModified());
+        playlist.setContentHash(download.getContentHash());
+    }
+    
+    /**
+     * Cache a playlist that was just imported; the commit left its new counts on it
+     */
+    private PlaylistDto cacheImportedPlaylist(Playlist playlist) {
+        PlaylistDto dto = convertToDto(playlist);
         
         // Cache the playlist
-        cacheService.put(String.format(PLAYLIST_CACHE_KEY, playlistId), dto);
+        cacheService.put(String.format(PLAYLIST_CACHE_KEY, playlist.getId()), dto);
         
         return dto;
     }
@@ -378,25 +526,8 @@ public class PlaylistService {
      */
     private PlaylistDto convertToDto(Playlist playlist) {
         String playlistId = playlist.getId();
-        
-        // Try to get counts from cache
-        int channelsCount = getCachedOrComputeCount(
-            String.format(PLAYLIST_CHANNELS_COUNT_CACHE_KEY, playlistId),
-            () -> playlist.getChannels() != null ? playlist.getChannels().size() : 
-                channelRepository.findByPlaylistId(playlistId).size()
-        );
-        
-        int moviesCount = getCachedOrComputeCount(
-            String.format(PLAYLIST_MOVIES_COUNT_CACHE_KEY, playlistId),
-            () -> playlist.getMovies() != null ? playlist.getMovies().size() : 
-                movieRepository.findByPlaylistId(playlistId).size()
-        );
-        
-        int seriesCount = getCachedOrComputeCount(
-            String.format(PLAYLIST_SERIES_COUNT_CACHE_KEY, playlistId),
-            () -> playlist.getSeries() != null ? playlist.getSeries().size() : 
-                seriesRepository.findByPlaylistId(playlistId).size()
-        );
+        // Only playlists imported before counts were stored need counting
+        countService.fillMissingCounts(List.of(playlist));
         
         return PlaylistDto.builder()
                 .id(playlistId)
@@ -407,37 +538,17 @@ public class PlaylistService {
                 .updatedAt(playlist.getUpdatedAt())
                 .lastRefreshed(playlist.getLastRefreshed())
                 .active(playlist.getActive())
-                .channelsCount(channelsCount)
-                .moviesCount(moviesCount)
-                .seriesCount(seriesCount)
+                .channelsCount(playlist.getChannelsCount().intValue())
+                .moviesCount(playlist.getMoviesCount().intValue())
+                .seriesCount(playlist.getSeriesCount().intValue())
                 .build();
     }
     
-    /**
-     * Helper method to get a count from cache or compute it
-     */
-    private int getCachedOrComputeCount(String cacheKey, Callable<Integer> countSupplier) {
-        return cacheService.get(cacheKey, Integer.class)
-                .orElseGet(() -> {
-                    try {
-                        int count = countSupplier.call();
-                        cacheService.put(cacheKey, count, 30, TimeUnit.MINUTES);
-                        return count;
-                    } catch (Exception e) {
-                        log.error("Error computing count", e);
-                        return 0;
-                    }
-                });
-    }
-    
     /**
      * Invalidate all caches related to a playlist
      */
     private void invalidatePlaylistCaches(String playlistId, String userId) {
         cacheService.remove(String.format(PLAYLIST_CACHE_KEY, playlistId));
-        cacheService.remove(String.format(PLAYLIST_CHANNELS_COUNT_CACHE_KEY, playlistId));
-        cacheService.remove(String.format(PLAYLIST_MOVIES_COUNT_CACHE_KEY, playlistId));
-        cacheService.remove(String.format(PLAYLIST_SERIES_COUNT_CACHE_KEY, playlistId));
         cacheService.remove(String.format(USER_PLAYLISTS_CACHE_KEY, userId));
     }
     
@@ -465,12 +576,4 @@ public class PlaylistService {
     public Optional<PlaylistImportResponse> getTaskStatus(String taskId) {
         return taskTrackerService.getTaskStatus(taskId);
     }
-    
-    /**
-     * Functional interface for computing counts
-     */
-    @FunctionalInterface
-    private interface Callable<T> {
-        T call() throws Exception;
-    }
 }
@@ -0,0 +1,197 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.PageResponse;
+import com.ahmed.iptvapp.dto.SearchHitDto;
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Playlist;
+import com.ahmed.iptvapp.model.Series;
+import com.ahmed.iptvapp.service.m3u.SearchTokens;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Search across the channels, movies and series of a playlist.
+ * Titles are tokenized at import (see {@link SearchTokens}); every term of a query must prefix one of the tokens,
+ * which the (playlistId, searchTokens) index answers without touching unrelated entries. The matches of each
+ * type are capped, matches on whole tokens fetched before prefix matches and each in _id order, so the likely
+ * top hits are always among them and a query ranks the same entries every time; the cap grows to cover the page
+ * asked for, and the total is counted when a type hit it. Candidates are ranked together: exact tokens beat
+ * prefixes, a match on the first word of the title beats one further in, and shorter titles come first.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchService {
+    
+    private static final String SEARCH_TOKENS = "searchTokens";
+    private static final String ID = "_id";
+    
+    private final PlaylistAccessService playlistAccess;
+    private final MongoTemplate mongoTemplate;
+    private final FavoriteService favoriteService;
+    
+    @Value("${app.search.max-candidates:500}")
+    private int maxCandidates;
+    
+    /**
+     * Ranked search of a playlist
+     *
+     * @param type Type of content to search, or null for all of them
+     */
+    public PageResponse<SearchHitDto> search(String playlistId, String text, SearchHitDto.Type type,
+                                             String userId, int page, int size) {
+        // Verify the user owns the playlist
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
+        
+        List<String> terms = SearchTokens.tokenize(text);
+        if (terms.isEmpty()) {
+            return PageResponse.of(List.of(), page, size, 0);
+        }
+        
+        // Enough candidates of each type for the page asked for
+        int limit = (int) Math.min(Integer.MAX_VALUE, Math.max(maxCandidates, ((long) page + 1) * size));
+        List<SearchHitDto> hits = new ArrayList<>();
+        long total = 0;
+        if (type == null || type == SearchHitDto.Type.CHANNEL) {
+            List<Channel> channels = candidates(playlist, terms, limit, Channel.class, Channel::getId,
+                    "name", "group", "logoUrl");
+            total += total(playlist, terms, limit, Channel.class, channels);
+            Set<String> favorites = favorites(playlist, SearchHitDto.Type.CHANNEL, channels);
+            for (Channel channel : channels) {
+                boolean favorite = favorites.contains(FavoriteService.key(playlistId, channel.getFingerprint(),
+                        channel.getStreamUrl(), channel.getName()));
+                hits.add(hit(SearchHitDto.Type.CHANNEL, channel.getId(), channel.getName(), channel.getGroup(),
+                        channel.getLogoUrl(), favorite, score(terms, channel.getSearchTokens())));
+            }
+        }
+        if (type == null || type == SearchHitDto.Type.MOVIE) {
+            List<Movie> movies = candidates(playlist, terms, limit, Movie.class, Movie::getId,
+                    "title", "genre", "thumbnailUrl");
+            total += total(playlist, terms, limit, Movie.class, movies);
+            Set<String> favorites = favorites(playlist, SearchHitDto.Type.MOVIE, movies);
+            for (Movie movie : movies) {
+                boolean favorite = favorites.contains(FavoriteService.key(playlistId, movie.getFingerprint(),
+                        movie.getStreamUrl(), movie.getTitle()));
+                hits.add(hit(SearchHitDto.Type.MOVIE, movie.getId(), movie.getTitle(), movie.getGenre(),
+                        movie.getThumbnailUrl(), favorite, score(terms, movie.getSearchTokens())));
+            }
+        }
+        if (type == null || type == SearchHitDto.Type.SERIES) {
+            List<Series> seriesList = candidates(playlist, terms, limit, Series.class, Series::getId,
+                    "title", "genre", "thumbnailUrl");
+            total += total(playlist, terms, limit, Series.class, seriesList);
+            Set<String> favorites = favorites(playlist, SearchHitDto.Type.SERIES, seriesList);
+            for (Series series : seriesList) {
+                hits.add(hit(SearchHitDto.Type.SERIES, series.getId(), series.getTitle(), series.getGenre(),
+                        series.getThumbnailUrl(), favorites.contains(series.getTitle()),
+                        score(terms, series.getSearchTokens())));
+            }
+        }
+        
+        hits.sort(Comparator.comparingDouble(SearchHitDto::getScore).reversed()
+                .thenComparing(SearchHitDto::getTitle, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)));
+        
+        int from = (int) Math.min((long) page * size, hits.size());
+        int to = Math.min(from + size, hits.size());
+        log.debug("Search '{}' in playlist {} matched {} entries, ranked {}", text, playlistId, total, hits.size());
+        return PageResponse.of(new ArrayList<>(hits.subList(from, to)), page, size, total);
+    }
+    
+    /**
+     * Criteria matching content whose tokens are prefixed by every term.
+     * Terms are runs of letters and digits, so they need no escaping, and anchored patterns bound the index scan.
+     */
+    public static Criteria matching(List<String> terms) {
+        return Criteria.where(SEARCH_TOKENS).all(terms.stream()
+                .map(term -> Pattern.compile("^" + term))
+                .toArray());
+    }
+    
+    /**
+     * Up to limit matches of a type: those with every term as a whole token first, then prefix matches
+     */
+    private <T> List<T> candidates(Playlist playlist, List<String> terms, int limit, Class<T> type,
+                                   Function<T, String> id, String... fields) {
+        List<T> found = new ArrayList<>(mongoTemplate.find(
+                candidateQuery(playlist, Criteria.where(SEARCH_TOKENS).all(terms), limit, fields), type));
+        if (found.size() < limit) {
+            List<String> exact = found.stream().map(id).toList();
+            found.addAll(mongoTemplate.find(candidateQuery(playlist, matching(terms).and(ID).nin(exact),
+                    limit - found.size(), fields), type));
+        }
+        return found;
+    }
+    
+    private static Query candidateQuery(Playlist playlist, Criteria criteria, int limit, String... fields) {
+        Query query = new Query(PlaylistGenerationService.visibleIn(playlist))
+                .addCriteria(criteria)
+                .with(Sort.by(ID))
+                .limit(limit);
+        // Channels and movies are marked by fingerprint, or the stream URL for content imported before those
+        query.fields().include(fields).include(SEARCH_TOKENS, "fingerprint", "streamUrl");
+        return query;
+    }
+    
+    /**
+     * Number of matches of a type, counted only if the candidates were capped
+     */
+    private long total(Playlist playlist, List<String> terms, int limit, Class<?> type, List<?> candidates) {
+        if (candidates.size() < limit) {
+            return candidates.size();
+        }
+        return mongoTemplate.count(new Query(PlaylistGenerationService.visibleIn(playlist))
+                .addCriteria(matching(terms)), type);
+    }
+    
+    /**
+     * Favorites of the owner among the candidates of a type, read only if there is a candidate
+     */
+    private Set<String> favorites(Playlist playlist, SearchHitDto.Type type, List<?> candidates) {
+        return candidates.isEmpty() ? Set.of() : favoriteService.keys(playlist.getUserId(), playlist.getId(), type);
+    }
+    
+    /**
+     * Two points per term matching a whole token and one per prefix, one more if the first term prefixes the
+     * first token, less a little per token so that the shortest of equal matches wins
+     */
+    static double score(List<String> terms, List<String> tokens) {
+        if (tokens == null || tokens.isEmpty()) {
+            return 0;
+        }
+        double score = 0;
+        for (String term : terms) {
+            score += tokens.contains(term) ? 2 : 1;
+        }
+        if (tokens.get(0).startsWith(terms.get(0))) {
+            score += 1;
+        }
+        return score - 0.01 * tokens.size();
+    }
+    
+    private static SearchHitDto hit(SearchHitDto.Type type, String id, String title, String category,
+                                    String imageUrl, Boolean favorite, double score) {
+        return SearchHitDto.builder()
+                .type(type)
+                .id(id)
+                .title(title)
+                .category(category)
+                .imageUrl(imageUrl)
+                .favorite(favorite)
+                .score(score)
+                .build();
+    }
+}
@@ -0,0 +1,85 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Series;
+import com.ahmed.iptvapp.service.m3u.SearchTokens;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Tokenizes the titles of content imported before search tokens were stored.
+ * Runs once in the background at startup, walking the collections in _id order one batch at a time;
+ * documents that already have tokens are skipped, so it is a no-op once everything is migrated.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchTokenBackfill {
+
+    private static final String ID = "_id";
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final Executor taskExecutor;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        taskExecutor.execute(() -> {
+            try {
+                backfill();
+            } catch (Exception e) {
+                // Next startup resumes with whatever is still missing
+                log.error("Failed to backfill search tokens", e);
+            }
+        });
+    }
+
+    public void backfill() {
+        backfill(Channel.class, "name");
+        backfill(Movie.class, "title");
+        backfill(Series.class, "title");
+    }
+
+    private void backfill(Class<?> type, String field) {
+        String collection = mongoTemplate.getCollectionName(type);
+        long updated = 0;
+        Object lower = null;
+        while (true) {
+            Criteria missing = Criteria.where("searchTokens").exists(false);
+            Query query = new Query(lower == null ? missing : missing.and(ID).gt(lower))
+                    .with(Sort.by(ID))
+                    .limit(BATCH_SIZE);
+            query.fields().include(field);
+            List<Document> batch = mongoTemplate.find(query, Document.class, collection);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+            for (Document document : batch) {
+                bulk.updateOne(new Query(Criteria.where(ID).is(document.get(ID))),
+                        Update.update("searchTokens", SearchTokens.tokenize(document.getString(field))));
+            }
+            bulk.execute();
+            updated += batch.size();
+            lower = batch.get(batch.size() - 1).get(ID);
+        }
+        if (updated > 0) {
+            log.info("Backfilled search tokens of {} {}", updated, collection);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Episode;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Layout of the episodes embedded in a series document.
+ * Episodes are kept sorted by season and episode, and the distinct seasons are kept next to them, so a season,
+ * an episode or a page of episodes can be projected out of the document without reading the whole array.
+ */
+final class SeriesEpisodes {
+
+    static final Sort ORDER = Sort.by(Sort.Direction.ASC, "seasonNumber", "episodeNumber");
+
+    /**
+     * Seasons of a series, computed from its episodes for documents written before seasons were stored
+     */
+    static final String SEASONS = "{ $ifNull: ['$seasons', { $setUnion: [{ $ifNull: ['$episodes.seasonNumber', []] }] }] }";
+
+    private SeriesEpisodes() {
+    }
+
+    /**
+     * Add episodes to a series update, keeping the episode order and the seasons list
+     */
+    static Update append(Update update, List<Episode> episodes) {
+        Object[] seasons = episodes.stream()
+                .map(Episode::getSeasonNumber)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toArray();
+        update.push("episodes").sort(ORDER).each(episodes.toArray());
+        return update.addToSet("seasons").each(seasons);
+    }
+}
@@ -1,180 +1,170 @@
 package com.ahmed.iptvapp.service;
 
+import com.ahmed.iptvapp.dto.SeriesSummaryDto;
+import com.ahmed.iptvapp.dto.FacetCountDto;
 import com.ahmed.iptvapp.dto.PageResponse;
+import com.ahmed.iptvapp.dto.SearchHitDto;
 import com.ahmed.iptvapp.model.Episode;
+import com.ahmed.iptvapp.model.Playlist;
 import com.ahmed.iptvapp.model.Series;
-import com.ahmed.iptvapp.repository.PlaylistRepository;
-import com.ahmed.iptvapp.repository.SeriesRepository;
+import com.ahmed.iptvapp.service.m3u.SearchTokens;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.MongoExpression;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SeriesService {
     
-    private final SeriesRepository seriesRepository;
-    private final PlaylistRepository playlistRepository;
+    // Episodes of the season bound to ?0
+    private static final String SEASON_EPISODES =
+            "{ $filter: { input: '$episodes', cond: { $eq: ['$$this.seasonNumber', ?0] } } }";
+    
+    // Order of series listings, which favorites follow
+    private static final Comparator<SeriesSummaryDto> LISTING_ORDER = Comparator
+            .comparing(SeriesSummaryDto::getTitle, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(SeriesSummaryDto::getId);
+    
+    private final PlaylistAccessService playlistAccess;
+    private final MongoTemplate mongoTemplate;
+    private final PlaylistFacetService facetService;
+    private final FavoriteService favoriteService;
     
     /**
      * Get all series for a playlist
      */
-    public List<Series> getSeriesByPlaylist(String playlistId, String userId) {
-        // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        return seriesRepository.findByPlaylistId(playlistId);
+    public List<SeriesSummaryDto> getSeriesByPlaylist(String playlistId, String userId) {
+        PageResponse<SeriesSummaryDto> response = getSeriesByPlaylistPaginated(playlistId, userId, 0, Integer.MAX_VALUE);
+        return response.getContent();
     }
     
     /**
      * Get all series for a playlist with pagination
      */
-    public PageResponse<Series> getSeriesByPlaylistPaginated(String playlistId, String userId, int page, int size) {
+    public PageResponse<SeriesSummaryDto> getSeriesByPlaylistPaginated(String playlistId, String userId, int page, int size) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        List<Series> allSeries = seriesRepository.findByPlaylistId(playlistId);
-        return paginateSeriesList(allSeries, page, size);
+        PageResponse<SeriesSummaryDto> response = findPage(playlist, null, page, size);
+        response.setNextCursor(KeysetCursor.next(response, SeriesSummaryDto::getTitle, SeriesSummaryDto::getId));
+        return response;
     }
     
     /**
-     * Get series by genre
+     * Get the series of a playlist following a cursor
+     *
+     * @param cursor Cursor of the previous page, or blank for the first page
+     * @param includeTotal Whether to count all series; without it only the presence of a next page is known
      */
-    public List<Series> getSeriesByGenre(String playlistId, String genre, String userId) {
+    public PageResponse<SeriesSummaryDto> getSeriesByPlaylistAfter(String playlistId, String userId, String cursor,
+                                                         int size, boolean includeTotal) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        return seriesRepository.findByGenre(genre);
+        Query query = summary(new Query().addCriteria(PlaylistGenerationService.visibleIn(playlist)));
+        PageResponse<SeriesSummaryDto> response = sortSeasons(KeysetCursor.find(mongoTemplate, query, Series.class,
+                SeriesSummaryDto.class, "title", SeriesSummaryDto::getTitle, SeriesSummaryDto::getId, cursor, size,
+                includeTotal));
+        markFavorites(playlist, response.getContent());
+        return response;
+    }
+    
+    /**
+     * Get series by genre
+     */
+    public List<SeriesSummaryDto> getSeriesByGenre(String playlistId, String genre, String userId) {
+        PageResponse<SeriesSummaryDto> response = getSeriesByGenrePaginated(playlistId, genre, userId, 0, Integer.MAX_VALUE);
+        return response.getContent();
     }
     
     /**
      * Get series by genre with pagination
      */
-    public PageResponse<Series> getSeriesByGenrePaginated(String playlistId, String genre, String userId, int page, int size) {
+    public PageResponse<SeriesSummaryDto> getSeriesByGenrePaginated(String playlistId, String genre, String userId, int page, int size) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        List<Series> allSeriesByGenre = seriesRepository.findByGenre(genre);
-        return paginateSeriesList(allSeriesByGenre, page, size);
+        return findPage(playlist, Criteria.where("genre").is(genre), page, size);
     }
     
     /**
      * Get a specific series
      */
     public Optional<Series> getSeries(String seriesId, String userId) {
-        Optional<Series> seriesOpt = seriesRepository.findById(seriesId);
-        
-        return seriesOpt.flatMap(series -> {
-            // Verify the user owns the playlist the series belongs to
-            return playlistRepository.findById(series.getPlaylistId())
-                    .filter(playlist -> playlist.getUserId().equals(userId))
-                    .map(playlist -> series);
-        });
+        return findSeries(new Query(Criteria.where("id").is(seriesId)), userId);
     }
     
     /**
-     * Toggle favorite status
+     * Toggle favorite status; series are marked by title, which identifies them across refreshes
      */
     public Series toggleFavorite(String seriesId, String userId) {
         Series series = getSeries(seriesId, userId)
                 .orElseThrow(() -> new RuntimeException("Series not found or access denied"));
         
-        series.setFavorite(!series.getFavorite());
-        return seriesRepository.save(series);
+        series.setFavorite(favoriteService.toggle(userId, series.getPlaylistId(), SearchHitDto.Type.SERIES,
+                series.getTitle()));
+        return series;
     }
     
     /**
      * Get all favorite series
      */
-    public List<Series> getFavorites(String playlistId, String userId) {
-        // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        return seriesRepository.findByPlaylistIdAndFavorite(playlistId, true);
+    public List<SeriesSummaryDto> getFavorites(String playlistId, String userId) {
+        PageResponse<SeriesSummaryDto> response = getFavoritesPaginated(playlistId, userId, 0, Integer.MAX_VALUE);
+        return response.getContent();
     }
     
     /**
-     * Get all favorite series with pagination
+     * Get all favorite series with pagination: the favorites of the playlist are fetched at once by title
      */
-    public PageResponse<Series> getFavoritesPaginated(String playlistId, String userId, int page, int size) {
+    public PageResponse<SeriesSummaryDto> getFavoritesPaginated(String playlistId, String userId, int page, int size) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
+        Set<String> favorites = favoriteService.keys(userId, playlistId, SearchHitDto.Type.SERIES);
+        if (favorites.isEmpty()) {
+            return PageResponse.of(List.of(), page, size, 0);
         }
+        Query query = summary(new Query()
+                .addCriteria(PlaylistGenerationService.visibleIn(playlist))
+                .addCriteria(Criteria.where("title").in(favorites)));
+        List<SeriesSummaryDto> series = mongoTemplate.query(Series.class).as(SeriesSummaryDto.class).matching(query).all();
+        series.forEach(item -> item.setFavorite(true));
         
-        List<Series> favorites = seriesRepository.findByPlaylistIdAndFavorite(playlistId, true);
-        return paginateSeriesList(favorites, page, size);
+        return sortSeasons(FavoriteService.page(series, LISTING_ORDER, page, size));
     }
     
     /**
      * Search for series by title
      */
-    public List<Series> searchSeries(String query, String playlistId, String userId) {
-        // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
-        
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        return seriesRepository.findByTitleContainingIgnoreCase(query);
+    public List<SeriesSummaryDto> searchSeries(String query, String playlistId, String userId) {
+        PageResponse<SeriesSummaryDto> response = searchSeriesPaginated(query, playlistId, userId, 0, Integer.MAX_VALUE);
+        return response.getContent();
     }
     
     /**
      * Search for series by title with pagination
      */
-    public PageResponse<Series> searchSeriesPaginated(String query, String playlistId, String userId, int page, int size) {
+    public PageResponse<SeriesSummaryDto> searchSeriesPaginated(String query, String playlistId, String userId, int page, int size) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
-        
-        List<Series> searchResults = seriesRepository.findByTitleContainingIgnoreCase(query);
-        return paginateSeriesList(searchResults, page, size);
+        return findPage(playlist, SearchService.matching(SearchTokens.tokenize(query)), page, size);
     }
     
     /**
@@ -182,53 +172,94 @@ public class SeriesService {
      */
     public List<String> getSeriesGenres(String playlistId, String userId) {
         // Verify the user owns the playlist
-        boolean hasAccess = playlistRepository.findById(playlistId)
-                .map(playlist -> playlist.getUserId().equals(userId))
-                .orElse(false);
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        if (!hasAccess) {
-            throw new RuntimeException("Access denied to playlist");
-        }
+        return facetService.getValues(playlist, Series.class, "genre");
+    }
+    
+    /**
+     * Get all available series genres with the number of series in each
+     */
+    public List<FacetCountDto> getSeriesGenreCounts(String playlistId, String userId) {
+        // Verify the user owns the playlist
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
         
-        return seriesRepository.findByPlaylistId(playlistId).stream()
-                .map(Series::getGenre)
-                .distinct()
-                .sorted()
-                .toList();
+        return facetService.getFacets(playlist, Series.class, "genre");
     }
     
     /**
      * Get episodes for a series
      */
     public List<Episode> getEpisodes(String seriesId, String userId) {
-        Series series = getSeries(seriesId, userId)
+        Query query = new Query(Criteria.where("id").is(seriesId));
+        query.fields().include("playlistId", "episodes");
+        
+        return episodesOf(findSeries(query, userId)
+                .orElseThrow(() -> new RuntimeException("Series not found or access denied")));
+    }
+    
+    /**
+     * Get a page of the episodes of a series, in season and episode order
+     *
+     * @param seasonNumber Season to page through, or null for all episodes
+     */
+    public PageResponse<Episode> getEpisodesPaginated(String seriesId, Integer seasonNumber, String userId,
+                                                      int page, int size) {
+        // The page and the total are both cut out of the array by the server
+        String episodes = seasonNumber == null ? "'$episodes'" : SEASON_EPISODES;
+        Query query = new Query(Criteria.where("id").is(seriesId));
+        query.fields()
+                .include("playlistId")
+                .project(MongoExpression.create("{ $slice: [{ $ifNull: [" + episodes + ", []] }, ?1, ?2] }",
+                        seasonNumber, (int) Math.min((long) page * size, Integer.MAX_VALUE), size)).as("episodes")
+                .project(MongoExpression.create("{ $size: { $ifNull: [" + episodes + ", []] } }",
+                        seasonNumber)).as("episodeCount");
+        
+        EpisodePage slice = Optional.ofNullable(mongoTemplate.query(Series.class).as(EpisodePage.class)
+                        .matching(query).oneValue())
+                .filter(result -> playlistAccess.owns(result.getPlaylistId(), userId))
                 .orElseThrow(() -> new RuntimeException("Series not found or access denied"));
         
-        return series.getEpisodes();
+        List<Episode> content = slice.getEpisodes() == null ? List.of() : slice.getEpisodes();
+        return PageResponse.of(content, page, size, slice.getEpisodeCount() == null ? 0 : slice.getEpisodeCount());
     }
     
     /**
      * Get specific episode by season and episode number
      */
     public Optional<Episode> getEpisode(String seriesId, int seasonNumber, int episodeNumber, String userId) {
-        Series series = getSeries(seriesId, userId)
-                .orElseThrow(() -> new RuntimeException("Series not found or access denied"));
+        return episodesOf(getSeriesEpisode(seriesId, seasonNumber, episodeNumber, userId)).stream().findFirst();
+    }
+    
+    /**
+     * Get a series with its title and thumbnail, and only the given episode, if it has it
+     */
+    public Series getSeriesEpisode(String seriesId, int seasonNumber, int episodeNumber, String userId) {
+        // Only the matching episode is returned out of the array
+        Query query = new Query(Criteria.where("id").is(seriesId));
+        query.fields()
+                .include("playlistId", "title", "thumbnailUrl")
+                .elemMatch("episodes", Criteria.where("seasonNumber").is(seasonNumber).and("episodeNumber").is(episodeNumber));
         
-        return series.getEpisodes().stream()
-                .filter(e -> e.getSeasonNumber() == seasonNumber && e.getEpisodeNumber() == episodeNumber)
-                .findFirst();
+        return findSeries(query, userId)
+                .orElseThrow(() -> new RuntimeException("Series not found or access denied"));
     }
     
     /**
      * Get all episodes for a specific season
      */
     public List<Episode> getSeasonEpisodes(String seriesId, int seasonNumber, String userId) {
-        Series series = getSeries(seriesId, userId)
+        Query query = new Query(Criteria.where("id").is(seriesId));
+        query.fields()
+                .include("playlistId")
+                .project(MongoExpression.create("{ $ifNull: [" + SEASON_EPISODES + ", []] }", seasonNumber)).as("episodes");
+        
+        Series series = findSeries(query, userId)
                 .orElseThrow(() -> new RuntimeException("Series not found or access denied"));
         
-        return series.getEpisodes().stream()
-                .filter(e -> e.getSeasonNumber() == seasonNumber)
-                .sorted((e1, e2) -> Integer.compare(e1.getEpisodeNumber(), e2.getEpisodeNumber()))
+        // Series imported before episodes were kept in order may hold them in any order
+        return episodesOf(series).stream()
+                .sorted(Comparator.comparing(Episode::getEpisodeNumber, Comparator.nullsFirst(Comparator.naturalOrder())))
                 .toList();
     }
     
@@ -236,28 +267,92 @@ public class SeriesService {
      * Get all available seasons for a series
      */
     public List<Integer> getAvailableSeasons(String seriesId, String userId) {
-        Series series = getSeries(seriesId, userId)
+        Query query = new Query(Criteria.where("id").is(seriesId));
+        query.fields()
+                .include("playlistId")
+                .project(MongoExpression.create(SeriesEpisodes.SEASONS)).as("seasons");
+        
+        Series series = findSeries(query, userId)
                 .orElseThrow(() -> new RuntimeException("Series not found or access denied"));
         
-        return series.getEpisodes().stream()
-                .map(Episode::getSeasonNumber)
-                .distinct()
+        return series.getSeasons() == null ? List.of() : series.getSeasons().stream()
+                .filter(Objects::nonNull)
                 .sorted()
                 .toList();
     }
     
     /**
-     * Helper method to paginate a list of series
+     * Find a series, or a projection of it, if the user owns its playlist
      */
-    private PageResponse<Series> paginateSeriesList(List<Series> seriesList, int page, int size) {
-        int totalElements = seriesList.size();
-        
-        // Avoid overflow
-        int fromIndex = Math.min(page * size, totalElements);
-        int toIndex = Math.min(fromIndex + size, totalElements);
+    private Optional<Series> findSeries(Query query, String userId) {
+        return playlistAccess.findOwnedContent(query, userId, Series.class, Series::getPlaylistId);
+    }
+    
+    private static List<Episode> episodesOf(Series series) {
+        return series.getEpisodes() == null ? List.of() : series.getEpisodes();
+    }
+    
+    /**
+     * Restrict a query to the fields listings show, with the episode count and seasons computed by the server,
+     * so the embedded episodes are only read for the detail view
+     */
+    private static Query summary(Query query) {
+        query.fields()
+                .include("title", "genre", "thumbnailUrl")
+                .project(MongoExpression.create("{ $size: { $ifNull: ['$episodes', []] } }")).as("episodeCount")
+                .project(MongoExpression.create(SeriesEpisodes.SEASONS)).as("seasons");
+        return query;
+    }
+    
+    /**
+     * Stored and computed seasons both come back in no particular order
+     */
+    private static PageResponse<SeriesSummaryDto> sortSeasons(PageResponse<SeriesSummaryDto> page) {
+        page.getContent().stream()
+                .filter(series -> series.getSeasons() != null)
+                .forEach(series -> series.setSeasons(series.getSeasons().stream().filter(Objects::nonNull).sorted().toList()));
+        return page;
+    }
+    
+    /**
+     * One page of the content readers currently see, sorted by title, with the total count of the filter
+     *
+     * @param filter Additional criteria, or null for the whole playlist
+     */
+    private PageResponse<SeriesSummaryDto> findPage(Playlist playlist, Criteria filter, int page, int size) {
+        Query query = new Query().addCriteria(PlaylistGenerationService.visibleIn(playlist));
+        if (filter != null) {
+            query.addCriteria(filter);
+        }
+        // The whole playlist is counted at import time
+        long total = filter == null && playlist.getSeriesCount() != null
+                ? playlist.getSeriesCount()
+                : mongoTemplate.count(query, Series.class);
         
-        List<Series> paginatedContent = seriesList.subList(fromIndex, toIndex);
+        Pageable pageable = PageRequest.of(page, size, KeysetCursor.sort("title"));
+        List<SeriesSummaryDto> content = mongoTemplate.query(Series.class).as(SeriesSummaryDto.class)
+                .matching(summary(query).with(pageable))
+                .all();
         
-        return PageResponse.of(paginatedContent, page, size, totalElements);
+        return sortSeasons(PageResponse.of(markFavorites(playlist, content), page, size, total));
+    }
+    
+    /**
+     * Flag series of a listing with the favorites of the owner
+     */
+    private List<SeriesSummaryDto> markFavorites(Playlist playlist, List<SeriesSummaryDto> series) {
+        return favoriteService.mark(playlist, SearchHitDto.Type.SERIES, series, SeriesSummaryDto::getTitle,
+                SeriesSummaryDto::setFavorite);
+    }
+    
+    /**
+     * A page of episodes projected out of a series, with the number of episodes paged through
+     */
+    @Data
+    @NoArgsConstructor
+    static class EpisodePage {
+        private String playlistId;
+        private List<Episode> episodes;
+        private Integer episodeCount;
     }
 }
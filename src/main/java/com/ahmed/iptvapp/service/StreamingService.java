@@ -1,5 +1,7 @@
 package com.ahmed.iptvapp.service;
 
+import com.ahmed.iptvapp.dto.BatchItemDto;
+import com.ahmed.iptvapp.dto.StreamInfoDto;
 import com.ahmed.iptvapp.model.Channel;
 import com.ahmed.iptvapp.model.Episode;
 import com.ahmed.iptvapp.model.Movie;
@@ -22,6 +24,7 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -69,6 +72,34 @@ public class StreamingService {
         return episode.getStreamUrl();
     }
     
+    /**
+     * Stream info of many channels at once, in request order, marking the ids not found
+     */
+    public List<BatchItemDto<StreamInfoDto>> getChannelStreamInfos(List<String> channelIds, String userId) {
+        return channelService.getChannels(channelIds, userId).stream()
+                .map(result -> result.isFound()
+                        ? BatchItemDto.found(result.getId(), streamInfo(result.getItem().getStreamUrl(),
+                                getProxiedChannelStreamUrl(result.getId(), userId)))
+                        : BatchItemDto.<StreamInfoDto>notFound(result.getId()))
+                .toList();
+    }
+    
+    /**
+     * Stream info of many movies at once, in request order, marking the ids not found
+     */
+    public List<BatchItemDto<StreamInfoDto>> getMovieStreamInfos(List<String> movieIds, String userId) {
+        return movieService.getMovies(movieIds, userId).stream()
+                .map(result -> result.isFound()
+                        ? BatchItemDto.found(result.getId(), streamInfo(result.getItem().getStreamUrl(),
+                                getProxiedMovieStreamUrl(result.getId(), userId)))
+                        : BatchItemDto.<StreamInfoDto>notFound(result.getId()))
+                .toList();
+    }
+    
+    private StreamInfoDto streamInfo(String streamUrl, String proxyUrl) {
+        return new StreamInfoDto(streamUrl, detectStreamType(streamUrl), proxyUrl);
+    }
+    
     /**
      * Create a proxied stream URL for a channel
      */
@@ -0,0 +1,197 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.SearchHitDto;
+import com.ahmed.iptvapp.dto.SuggestionDto;
+import com.ahmed.iptvapp.service.m3u.SearchTokens;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable prefix index of the titles of one playlist generation.
+ * Every title is normalized (see {@link SearchTokens#normalize}) and indexed under each of its word suffixes,
+ * so "the dark knight" is found from "the d", "dark" or "kni". Keys are kept in one sorted array per content type:
+ * a lookup is a binary search for the first key not below the prefix followed by a short forward scan, so a
+ * lookup of one type never spends its scan on keys of the others.
+ */
+final class SuggestionIndex {
+
+    // Longer typed prefixes are cut to this length, which bounds the memory of long titles
+    static final int MAX_KEY_LENGTH = 32;
+
+    // Keys examined per lookup and type; beyond this the prefix is too short to rank all its matches anyway
+    private static final int SCAN_LIMIT = 256;
+
+    private static final SearchHitDto.Type[] TYPES = SearchHitDto.Type.values();
+
+    private final long generation;
+    // Sorted keys of each type, by type ordinal
+    private final String[][] keys;
+    // Entry of each key, and whether the key starts the title (top bit)
+    private final int[][] keyEntries;
+    private final String[] ids;
+    private final String[] titles;
+    private final byte[] types;
+    private final long estimatedBytes;
+
+    private SuggestionIndex(long generation, String[][] keys, int[][] keyEntries, String[] ids, String[] titles,
+                            byte[] types, long estimatedBytes) {
+        this.generation = generation;
+        this.keys = keys;
+        this.keyEntries = keyEntries;
+        this.ids = ids;
+        this.titles = titles;
+        this.types = types;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Rough heap footprint, for the memory budget
+     */
+    long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * Titles completing a prefix: titles starting with it first, then shorter titles, then alphabetically
+     *
+     * @param type Type of content to suggest, or null for all of them
+     */
+    List<SuggestionDto> suggest(String prefix, SearchHitDto.Type type, int limit) {
+        String key = truncate(SearchTokens.normalize(prefix));
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Set<Integer> leading = new LinkedHashSet<>();
+        Set<Integer> inner = new LinkedHashSet<>();
+        for (SearchHitDto.Type candidate : TYPES) {
+            if (type == null || candidate == type) {
+                scan(keys[candidate.ordinal()], keyEntries[candidate.ordinal()], key, leading, inner);
+            }
+        }
+        inner.removeAll(leading);
+
+        Comparator<Integer> order = Comparator.<Integer>comparingInt(entry -> titles[entry].length())
+                .thenComparing(entry -> titles[entry], String.CASE_INSENSITIVE_ORDER);
+        List<Integer> ranked = new ArrayList<>(leading.size() + inner.size());
+        leading.stream().sorted(order).forEach(ranked::add);
+        inner.stream().sorted(order).forEach(ranked::add);
+
+        return ranked.stream()
+                .limit(limit)
+                .map(entry -> new SuggestionDto(TYPES[types[entry]], ids[entry], titles[entry]))
+                .toList();
+    }
+
+    private static void scan(String[] keys, int[] keyEntries, String key, Set<Integer> leading, Set<Integer> inner) {
+        int position = lowerBound(keys, key);
+        for (int scanned = 0; position < keys.length && scanned < SCAN_LIMIT; position++, scanned++) {
+            if (!keys[position].startsWith(key)) {
+                break;
+            }
+            int entry = keyEntries[position] & Integer.MAX_VALUE;
+            (keyEntries[position] < 0 ? leading : inner).add(entry);
+        }
+    }
+
+    private static int lowerBound(String[] keys, String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String truncate(String key) {
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key;
+    }
+
+    /**
+     * Collects the titles of a generation, then sorts them into an index
+     */
+    static final class Builder {
+
+        private final long generation;
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> titles = new ArrayList<>();
+        private final List<Byte> types = new ArrayList<>();
+        private final List<Key> keys = new ArrayList<>();
+
+        Builder(long generation) {
+            this.generation = generation;
+        }
+
+        Builder add(SearchHitDto.Type type, String id, String title) {
+            String normalized = SearchTokens.normalize(title);
+            if (id == null || normalized.isEmpty()) {
+                return this;
+            }
+            int entry = ids.size();
+            ids.add(id);
+            titles.add(title);
+            types.add((byte) type.ordinal());
+
+            keys.add(new Key(truncate(normalized), entry | Integer.MIN_VALUE));
+            for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+                keys.add(new Key(truncate(normalized.substring(i + 1)), entry));
+            }
+            return this;
+        }
+
+        SuggestionIndex build() {
+            List<List<Key>> keysByType = new ArrayList<>();
+            for (int i = 0; i < TYPES.length; i++) {
+                keysByType.add(new ArrayList<>());
+            }
+            for (Key key : keys) {
+                keysByType.get(types.get(key.entry() & Integer.MAX_VALUE)).add(key);
+            }
+
+            String[][] sortedKeys = new String[TYPES.length][];
+            int[][] keyEntries = new int[TYPES.length][];
+            long bytes = 0;
+            for (int type = 0; type < TYPES.length; type++) {
+                List<Key> typeKeys = keysByType.get(type);
+                typeKeys.sort(Comparator.comparing(Key::value));
+                sortedKeys[type] = new String[typeKeys.size()];
+                keyEntries[type] = new int[typeKeys.size()];
+                for (int i = 0; i < typeKeys.size(); i++) {
+                    sortedKeys[type][i] = typeKeys.get(i).value();
+                    keyEntries[type][i] = typeKeys.get(i).entry();
+                    bytes += 48 + sortedKeys[type][i].length();
+                }
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                bytes += 96 + ids.get(i).length() + titles.get(i).length();
+            }
+
+            byte[] entryTypes = new byte[types.size()];
+            for (int i = 0; i < entryTypes.length; i++) {
+                entryTypes[i] = types.get(i);
+            }
+            return new SuggestionIndex(generation, sortedKeys, keyEntries, ids.toArray(String[]::new),
+                    titles.toArray(String[]::new), entryTypes, bytes);
+        }
+
+        private record Key(String value, int entry) {
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.SearchHitDto;
+import com.ahmed.iptvapp.dto.SuggestionDto;
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Playlist;
+import com.ahmed.iptvapp.model.Series;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Autocompletion of channel names and movie and series titles, answered from memory.
+ * Each playlist gets a {@link SuggestionIndex} of its current generation, built when a generation is committed
+ * or on the first lookup after that. While the index of a new generation builds, lookups are answered from the
+ * index of the previous one, so a refresh never stalls typing. Indexes of playlists nobody typed into for a while
+ * are dropped, and the least recently used ones go first when all of them together exceed the memory budget.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SuggestionService {
+    
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    
+    private final PlaylistAccessService playlistAccess;
+    private final MongoTemplate mongoTemplate;
+    private final Executor taskExecutor;
+    
+    private final Map<String, Slot> indexes = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+    
+    @Value("${app.suggest.memory-budget-mb:256}")
+    private long memoryBudgetMb;
+    
+    @Value("${app.suggest.idle-minutes:30}")
+    private long idleMinutes;
+    
+    /**
+     * Titles of a playlist completing a typed prefix
+     *
+     * @param type Type of content to suggest, or null for all of them
+     */
+    public List<SuggestionDto> suggest(String playlistId, String prefix, SearchHitDto.Type type, int limit,
+                                       String userId) {
+        // Verify the user owns the playlist
+        Playlist playlist = playlistAccess.requireOwned(playlistId, userId);
+        
+        List<SuggestionDto> suggestions = indexFor(playlist).suggest(prefix, type, Math.min(limit, MAX_SUGGESTIONS));
+        sweepIfDue();
+        return suggestions;
+    }
+    
+    /**
+     * Build the index of a generation that was just committed, ahead of the first keystroke
+     */
+    public void onCommitted(Playlist playlist) {
+        taskExecutor.execute(() -> {
+            Slot slot = slotFor(playlist);
+            if (slot.claim()) {
+                buildInBackground(playlist.getId(), slot);
+            }
+        });
+    }
+    
+    public void evict(String playlistId) {
+        indexes.remove(playlistId);
+    }
+    
+    /**
+     * The index of the generation the playlist serves, building it if needed.
+     * Concurrent callers share one build; callers reading an older generation are served the newer index, and
+     * callers arriving while it builds the previous index if there is one.
+     */
+    private SuggestionIndex indexFor(Playlist playlist) {
+        Slot slot = slotFor(playlist);
+        SuggestionIndex previous = slot.previous;
+        if (slot.claim()) {
+            if (previous == null) {
+                build(playlist.getId(), slot);
+            } else {
+                try {
+                    taskExecutor.execute(() -> buildInBackground(playlist.getId(), slot));
+                } catch (RejectedExecutionException e) {
+                    build(playlist.getId(), slot);
+                }
+            }
+        }
+        
+        if (!slot.index.isDone() && previous != null) {
+            return previous;
+        }
+        try {
+            return slot.index.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to build suggestions of playlist " + playlist.getId(), e.getCause());
+        }
+    }
+    
+    /**
+     * The slot of the generation the playlist serves, replacing that of an older generation
+     */
+    private Slot slotFor(Playlist playlist) {
+        long generation = PlaylistGenerationService.currentGeneration(playlist);
+        Slot slot = indexes.compute(playlist.getId(), (id, current) -> current != null && current.generation >= generation
+                ? current : new Slot(generation, current == null ? null : current.servable()));
+        slot.lastAccess = System.nanoTime();
+        return slot;
+    }
+    
+    private void build(String playlistId, Slot slot) {
+        try {
+            slot.index.complete(build(playlistId, slot.generation));
+            slot.previous = null;
+        } catch (RuntimeException e) {
+            indexes.remove(playlistId, slot);
+            slot.index.completeExceptionally(e);
+            throw e;
+        }
+        enforceBudget();
+    }
+    
+    private void buildInBackground(String playlistId, Slot slot) {
+        try {
+            build(playlistId, slot);
+        } catch (Exception e) {
+            // The next lookup builds it instead
+            log.warn("Failed to build suggestion index of playlist {}", playlistId, e);
+        }
+    }
+    
+    private SuggestionIndex build(String playlistId, long generation) {
+        long start = System.currentTimeMillis();
+        SuggestionIndex.Builder builder = new SuggestionIndex.Builder(generation);
+        addTitles(builder, playlistId, generation, Channel.class, "name", SearchHitDto.Type.CHANNEL);
+        addTitles(builder, playlistId, generation, Movie.class, "title", SearchHitDto.Type.MOVIE);
+        addTitles(builder, playlistId, generation, Series.class, "title", SearchHitDto.Type.SERIES);
+        SuggestionIndex index = builder.build();
+        
+        log.info("Built suggestions of playlist {} generation {}: {} titles, ~{} KB in {} ms", playlistId,
+                generation, index.size(), index.getEstimatedBytes() / 1024, System.currentTimeMillis() - start);
+        return index;
+    }
+    
+    private void addTitles(SuggestionIndex.Builder builder, String playlistId, long generation, Class<?> type,
+                           String field, SearchHitDto.Type hitType) {
+        Query query = new Query(PlaylistGenerationService.visibleIn(playlistId, generation));
+        query.fields().include(field);
+        try (Stream<Document> documents = mongoTemplate.stream(query, Document.class,
+                mongoTemplate.getCollectionName(type))) {
+            documents.forEach(document -> builder.add(hitType, String.valueOf(document.get("_id")),
+                    document.getString(field)));
+        }
+    }
+    
+    /**
+     * Drop idle indexes at most once a minute
+     */
+    private void sweepIfDue() {
+        long now = System.nanoTime();
+        long last = lastSweep.get();
+        if (now - last >= SWEEP_INTERVAL_NANOS && lastSweep.compareAndSet(last, now)) {
+            enforceBudget();
+        }
+    }
+    
+    /**
+     * Drop idle indexes, then the least recently used ones until the rest fits the budget
+     */
+    private void enforceBudget() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        indexes.entrySet().removeIf(entry -> now - entry.getValue().lastAccess > idleNanos);
+        
+        List<Map.Entry<String, Slot>> built = indexes.entrySet().stream()
+                .filter(entry -> entry.getValue().index.isDone() && !entry.getValue().index.isCompletedExceptionally())
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                .toList();
+        long total = built.stream().mapToLong(entry -> entry.getValue().index.join().getEstimatedBytes()).sum();
+        long budget = memoryBudgetMb * 1024 * 1024;
+        
+        // The most recently used index stays, even alone over budget
+        for (int i = 0; i < built.size() - 1 && total > budget; i++) {
+            Map.Entry<String, Slot> entry = built.get(i);
+            if (indexes.remove(entry.getKey(), entry.getValue())) {
+                total -= entry.getValue().index.join().getEstimatedBytes();
+                log.debug("Evicted suggestions of playlist {} over the memory budget", entry.getKey());
+            }
+        }
+    }
+    
+    /**
+     * Index of one generation of a playlist, possibly still being built
+     */
+    private static class Slot {
+        private final long generation;
+        // Index of an older generation, served until this one is built, then dropped; null if there is none
+        private volatile SuggestionIndex previous;
+        private final CompletableFuture<SuggestionIndex> index = new CompletableFuture<>();
+        private final AtomicBoolean building = new AtomicBoolean();
+        private volatile long lastAccess = System.nanoTime();
+        
+        Slot(long generation, SuggestionIndex previous) {
+            this.generation = generation;
+            this.previous = previous;
+        }
+        
+        /**
+         * Whether the caller is the one to build the index
+         */
+        boolean claim() {
+            return building.compareAndSet(false, true);
+        }
+        
+        /**
+         * The newest built index, to serve while a newer generation builds
+         */
+        SuggestionIndex servable() {
+            return index.isDone() && !index.isCompletedExceptionally() ? index.join() : previous;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.cache.WatchHistoryStore;
+import com.ahmed.iptvapp.dto.WatchHeartbeatDto;
+import com.ahmed.iptvapp.dto.WatchProgressDto;
+import com.ahmed.iptvapp.model.Episode;
+import com.ahmed.iptvapp.model.Movie;
+import com.ahmed.iptvapp.model.Playlist;
+import com.ahmed.iptvapp.model.Series;
+import com.ahmed.iptvapp.model.WatchProgress;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Watch history and resume positions of movies and episodes.
+ * Players report their position every few seconds; heartbeats go to the {@link WatchHistoryStore} (Valkey, or
+ * memory), which keeps the app.watch.history-size most recent items of each user, so a "continue watching" row is
+ * a single read of bounded size. Only the latest position per user and item is kept pending, and written behind
+ * to MongoDB in one bulk every app.watch.flush-interval-ms, or sooner once app.watch.max-pending items wait; a
+ * position only replaces an older one, so across instances the newest heartbeat wins.
+ * Ownership and display details are looked up on the first heartbeat of an item only.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WatchHistoryService {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final WatchHistoryStore store;
+    private final MongoTemplate mongoTemplate;
+    private final MovieService movieService;
+    private final SeriesService seriesService;
+    private final Executor taskExecutor;
+
+    // Positions not written to MongoDB yet, latest per user and item
+    private final Map<String, WatchProgress> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    @Value("${app.watch.history-size:50}")
+    private int historySize;
+
+    @Value("${app.watch.max-pending:50000}")
+    private int maxPending;
+
+    @Value("${app.watch.finished-ratio:0.95}")
+    private double finishedRatio;
+
+    /**
+     * Record a heartbeat of a player
+     */
+    public void recordProgress(String userId, WatchHeartbeatDto heartbeat) {
+        String item = item(heartbeat.getType(), heartbeat.getContentId(),
+                heartbeat.getSeasonNumber(), heartbeat.getEpisodeNumber());
+        WatchProgressDto known = positions(userId, item).get(item);
+        // Players that cannot tell the duration yet leave it out
+        Long durationSeconds = heartbeat.getDurationSeconds() != null || known == null
+                ? heartbeat.getDurationSeconds() : known.getDurationSeconds();
+        WatchProgressDto progress = (known != null ? known.toBuilder() : describe(heartbeat, userId))
+                .positionSeconds(heartbeat.getPositionSeconds())
+                .durationSeconds(durationSeconds)
+                .finished(isFinished(heartbeat.getPositionSeconds(), durationSeconds))
+                .watchedAt(System.currentTimeMillis())
+                .build();
+
+        if (!store.record(userId, item, progress, historySize)) {
+            load(userId);
+            store.record(userId, item, progress, historySize);
+        }
+        pending.put(id(userId, item), toDocument(userId, item, progress));
+        if (pending.size() >= maxPending && flushQueued.compareAndSet(false, true)) {
+            taskExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Items of a "continue watching" row: the most recently watched ones that are not finished
+     */
+    public List<WatchProgressDto> getContinueWatching(String userId, int limit) {
+        return recent(userId).stream()
+                .filter(progress -> !progress.isFinished())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Most recently watched items, finished or not
+     */
+    public List<WatchProgressDto> getHistory(String userId, int limit) {
+        return recent(userId).stream().limit(limit).toList();
+    }
+
+    /**
+     * Resume position of a movie
+     */
+    public Optional<WatchProgressDto> getMovieProgress(String movieId, String userId) {
+        return getProgress(userId, item(WatchProgressDto.Type.MOVIE, movieId, null, null));
+    }
+
+    /**
+     * Resume position of an episode
+     */
+    public Optional<WatchProgressDto> getEpisodeProgress(String seriesId, int seasonNumber, int episodeNumber,
+                                                         String userId) {
+        return getProgress(userId, item(WatchProgressDto.Type.EPISODE, seriesId, seasonNumber, episodeNumber));
+    }
+
+    /**
+     * Drop the history of a deleted playlist
+     */
+    public synchronized void forgetPlaylist(Playlist playlist) {
+        pending.values().removeIf(progress -> playlist.getId().equals(progress.getPlaylistId()));
+        mongoTemplate.remove(new Query(Criteria.where("playlistId").is(playlist.getId())), WatchProgress.class);
+        store.remove(playlist.getUserId());
+    }
+
+    /**
+     * Write the pending positions to MongoDB in one bulk
+     */
+    @Scheduled(fixedDelayString = "${app.watch.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        flushQueued.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<WatchProgress> batch;
+        try {
+            batch = withoutDeletedPlaylists(List.copyOf(pending.values()));
+        } catch (Exception e) {
+            log.error("Failed to check the playlists of {} watch positions", pending.size(), e);
+            return;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, WatchProgress.class);
+        // Only over an older position, so an instance flushing late cannot take another's newer one back
+        batch.forEach(progress -> bulk.upsert(new Query(Criteria.where("id").is(progress.getId())
+                        .orOperator(Criteria.where("watchedAt").exists(false),
+                                Criteria.where("watchedAt").lt(progress.getWatchedAt()))),
+                new Update()
+                        .set("userId", progress.getUserId())
+                        .set("playlistId", progress.getPlaylistId())
+                        .set("type", progress.getType())
+                        .set("contentId", progress.getContentId())
+                        .set("seasonNumber", progress.getSeasonNumber())
+                        .set("episodeNumber", progress.getEpisodeNumber())
+                        .set("title", progress.getTitle())
+                        .set("imageUrl", progress.getImageUrl())
+                        .set("positionSeconds", progress.getPositionSeconds())
+                        .set("durationSeconds", progress.getDurationSeconds())
+                        .set("finished", progress.isFinished())
+                        .set("watchedAt", progress.getWatchedAt())));
+
+        Set<Integer> failed = Set.of();
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // A newer position already written turns the upsert into an insert of a duplicate id: nothing to write
+            failed = e.getErrors().stream()
+                    .filter(error -> error.getCode() != DUPLICATE_KEY)
+                    .map(BulkWriteError::getIndex)
+                    .collect(Collectors.toSet());
+            if (!failed.isEmpty()) {
+                log.error("Failed to write {} of {} watch positions", failed.size(), batch.size(), e);
+            }
+        } catch (Exception e) {
+            // Left pending, so the next flush writes them again
+            log.error("Failed to write {} watch positions", batch.size(), e);
+            return;
+        }
+        // Reported again meanwhile: the newer position stays pending; failed ones are written again next time
+        for (int i = 0; i < batch.size(); i++) {
+            if (!failed.contains(i)) {
+                pending.remove(batch.get(i).getId(), batch.get(i));
+            }
+        }
+        log.debug("Wrote {} watch positions", batch.size());
+    }
+
+    @PreDestroy
+    public void onShutdown() {
+        flush();
+    }
+
+    /**
+     * Drop the positions of playlists deleted since they were reported: a heartbeat in flight while its playlist
+     * was forgotten is recorded after it
+     */
+    private List<WatchProgress> withoutDeletedPlaylists(List<WatchProgress> batch) {
+        Set<String> playlistIds = batch.stream().map(WatchProgress::getPlaylistId).collect(Collectors.toSet());
+        Query query = new Query(Criteria.where("id").in(playlistIds));
+        query.fields().include("id");
+        Set<String> existing = mongoTemplate.find(query, Playlist.class).stream()
+                .map(Playlist::getId)
+                .collect(Collectors.toSet());
+        if (existing.size() == playlistIds.size()) {
+            return batch;
+        }
+        List<WatchProgress> kept = new ArrayList<>(batch.size());
+        for (WatchProgress progress : batch) {
+            if (existing.contains(progress.getPlaylistId())) {
+                kept.add(progress);
+            } else {
+                pending.remove(progress.getId(), progress);
+                // Reloaded without it on next use
+                store.remove(progress.getUserId());
+            }
+        }
+        log.debug("Dropped {} watch positions of deleted playlists", batch.size() - kept.size());
+        return kept;
+    }
+
+    private Optional<WatchProgressDto> getProgress(String userId, String item) {
+        WatchProgressDto progress = positions(userId, item).get(item);
+        if (progress != null) {
+            return Optional.of(progress);
+        }
+        // Fell out of the recent history
+        return Optional.ofNullable(mongoTemplate.findById(id(userId, item), WatchProgress.class))
+                .map(WatchHistoryService::toDto);
+    }
+
+    private List<WatchProgressDto> recent(String userId) {
+        return store.recent(userId, historySize).orElseGet(() -> {
+            load(userId);
+            return store.recent(userId, historySize).orElse(List.of());
+        });
+    }
+
+    private Map<String, WatchProgressDto> positions(String userId, String item) {
+        return store.positions(userId, List.of(item)).orElseGet(() -> {
+            load(userId);
+            return store.positions(userId, List.of(item)).orElse(Map.of());
+        });
+    }
+
+    /**
+     * Read the recent history of a user from MongoDB, with the positions of this instance not written yet,
+     * into the store
+     */
+    private void load(String userId) {
+        Query query = new Query(Criteria.where("userId").is(userId))
+                .with(Sort.by(Sort.Direction.DESC, "watchedAt"))
+                .limit(historySize);
+        Map<String, WatchProgressDto> history = new HashMap<>();
+        for (WatchProgress progress : mongoTemplate.find(query, WatchProgress.class)) {
+            history.put(itemOf(progress.getId()), toDto(progress));
+        }
+        pending.values().stream()
+                .filter(progress -> progress.getUserId().equals(userId))
+                .forEach(progress -> history.put(itemOf(progress.getId()), toDto(progress)));
+        store.load(userId, history);
+    }
+
+    /**
+     * What a "continue watching" row shows of an item, checking on the way that the user may watch it
+     */
+    private WatchProgressDto.WatchProgressDtoBuilder describe(WatchHeartbeatDto heartbeat, String userId) {
+        WatchProgressDto.WatchProgressDtoBuilder progress = WatchProgressDto.builder()
+                .type(heartbeat.getType())
+                .contentId(heartbeat.getContentId());
+        if (heartbeat.getType() == WatchProgressDto.Type.MOVIE) {
+            Movie movie = movieService.getMovie(heartbeat.getContentId(), userId)
+                    .orElseThrow(() -> new RuntimeException("Movie not found or access denied"));
+            return progress
+                    .playlistId(movie.getPlaylistId())
+                    .title(movie.getTitle())
+                    .imageUrl(movie.getThumbnailUrl());
+        }
+
+        Series series = seriesService.getSeriesEpisode(heartbeat.getContentId(), heartbeat.getSeasonNumber(),
+                heartbeat.getEpisodeNumber(), userId);
+        Episode episode = Optional.ofNullable(series.getEpisodes()).stream()
+                .flatMap(List::stream)
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Episode not found"));
+        return progress
+                .seasonNumber(heartbeat.getSeasonNumber())
+                .episodeNumber(heartbeat.getEpisodeNumber())
+                .playlistId(series.getPlaylistId())
+                .title(series.getTitle() + " - " + episode.getTitle())
+                .imageUrl(episode.getThumbnailUrl() != null ? episode.getThumbnailUrl() : series.getThumbnailUrl());
+    }
+
+    private boolean isFinished(long positionSeconds, Long durationSeconds) {
+        return durationSeconds != null && durationSeconds > 0 && positionSeconds >= durationSeconds * finishedRatio;
+    }
+
+    private static String item(WatchProgressDto.Type type, String contentId, Integer seasonNumber,
+                               Integer episodeNumber) {
+        return type == WatchProgressDto.Type.MOVIE
+                ? "movie:" + contentId
+                : "episode:" + contentId + ":" + seasonNumber + ":" + episodeNumber;
+    }
+
+    private static String id(String userId, String item) {
+        return userId + ":" + item;
+    }
+
+    // User ids may not contain ':', items do
+    private static String itemOf(String id) {
+        return id.substring(id.indexOf(':') + 1);
+    }
+
+    private static WatchProgress toDocument(String userId, String item, WatchProgressDto progress) {
+        return WatchProgress.builder()
+                .id(id(userId, item))
+                .userId(userId)
+                .playlistId(progress.getPlaylistId())
+                .type(progress.getType().name())
+                .contentId(progress.getContentId())
+                .seasonNumber(progress.getSeasonNumber())
+                .episodeNumber(progress.getEpisodeNumber())
+                .title(progress.getTitle())
+                .imageUrl(progress.getImageUrl())
+                .positionSeconds(progress.getPositionSeconds())
+                .durationSeconds(progress.getDurationSeconds())
+                .finished(progress.isFinished())
+                .watchedAt(Instant.ofEpochMilli(progress.getWatchedAt()))
+                .build();
+    }
+
+    private static WatchProgressDto toDto(WatchProgress progress) {
+        return WatchProgressDto.builder()
+                .type(WatchProgressDto.Type.valueOf(progress.getType()))
+                .contentId(progress.getContentId())
+                .seasonNumber(progress.getSeasonNumber())
+                .episodeNumber(progress.getEpisodeNumber())
+                .playlistId(progress.getPlaylistId())
+                .title(progress.getTitle())
+                .imageUrl(progress.getImageUrl())
+                .positionSeconds(progress.getPositionSeconds())
+                .durationSeconds(progress.getDurationSeconds())
+                .finished(progress.isFinished())
+                .watchedAt(progress.getWatchedAt() == null ? 0 : progress.getWatchedAt().toEpochMilli())
+                .build();
+    }
+}
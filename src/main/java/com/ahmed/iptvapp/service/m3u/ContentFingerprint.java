@@ -0,0 +1,68 @@
+package com.ahmed.iptvapp.service.m3u;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stable identities and content hashes for playlist entries.
+ * The fingerprint says which document an entry maps to across refreshes,
+ * the content hash says whether that document needs rewriting.
+ */
+public final class ContentFingerprint {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_BYTES = 16;
+    private static final char SEPARATOR = '\u0000';
+
+    private ContentFingerprint() {
+    }
+
+    /**
+     * Identity of an entry within a playlist: playlist + stream URL + title
+     */
+    public static String of(String playlistId, String streamUrl, String title) {
+        StringBuilder key = new StringBuilder();
+        append(key, playlistId);
+        append(key, streamUrl);
+        append(key, title);
+        return hash(key);
+    }
+
+    /**
+     * Hash of the mutable fields of an entry; attributes are hashed in key order
+     */
+    public static String contentHash(Map<String, String> attributes, String... fields) {
+        StringBuilder content = new StringBuilder();
+        for (String field : fields) {
+            append(content, field);
+        }
+        if (attributes != null) {
+            new TreeMap<>(attributes).forEach((key, value) -> {
+                append(content, key);
+                append(content, value);
+            });
+        }
+        return hash(content);
+    }
+
+    private static void append(StringBuilder builder, String value) {
+        if (value != null) {
+            builder.append(value);
+        }
+        builder.append(SEPARATOR);
+    }
+
+    private static String hash(CharSequence value) {
+        try {
+            byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM)
+                    .digest(value.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, HASH_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not available", e);
+        }
+    }
+}
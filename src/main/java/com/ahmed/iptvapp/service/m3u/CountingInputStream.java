@@ -0,0 +1,57 @@
+package com.ahmed.iptvapp.service.m3u;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that reports how many bytes have been read through it.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    private final long contentLength;
+    private final DownloadProgressListener listener;
+    private long bytesRead;
+
+    public CountingInputStream(InputStream in, long contentLength, DownloadProgressListener listener) {
+        super(in);
+        this.contentLength = contentLength;
+        this.listener = listener;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            count(skipped);
+        }
+        return skipped;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    private void count(long n) {
+        bytesRead += n;
+        listener.onProgress(bytesRead, contentLength);
+    }
+}
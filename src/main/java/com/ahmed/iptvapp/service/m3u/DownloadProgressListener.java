@@ -0,0 +1,14 @@
+package com.ahmed.iptvapp.service.m3u;
+
+/**
+ * Callback for the number of playlist bytes read so far.
+ */
+@FunctionalInterface
+public interface DownloadProgressListener {
+
+    /**
+     * @param bytesRead Bytes read from the connection so far
+     * @param contentLength Total length announced by the server, or -1 if unknown
+     */
+    void onProgress(long bytesRead, long contentLength);
+}
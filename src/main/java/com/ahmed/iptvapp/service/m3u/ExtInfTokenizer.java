@@ -0,0 +1,120 @@
+package com.ahmed.iptvapp.service.m3u;
+
+import java.util.Map;
+
+/**
+ * Single-pass scanner for {@code #EXTINF} lines.
+ * Reads the header attributes and the title in one walk over the line, without regular expressions.
+ */
+public final class ExtInfTokenizer {
+
+    public static final String EXTINF_PREFIX = "#EXTINF:";
+
+    private static final String GROUP_TITLE_KEY = "group-title";
+    private static final String TVG_KEY_PREFIX = "tvg-";
+    private static final String UNKNOWN_TITLE = "Unknown";
+
+    private ExtInfTokenizer() {
+    }
+
+    /**
+     * Scan an EXTINF line, collecting the group-title and tvg-* attributes into the given map.
+     * Commas inside quoted attribute values do not end the header.
+     *
+     * @param line The EXTINF line
+     * @param attributes Map receiving the parsed attributes
+     * @return The title following the header, or "Unknown" if the line has none
+     */
+    public static String tokenize(String line, Map<String, String> attributes) {
+        int length = line.length();
+        boolean hasPrefix = line.startsWith(EXTINF_PREFIX);
+        int i = hasPrefix ? EXTINF_PREFIX.length() : 0;
+        int titleStart = -1;
+
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == ',') {
+                titleStart = i + 1;
+                break;
+            }
+            if (c == '"') {
+                // Stray quoted section without a key, skip it whole
+                int close = line.indexOf('"', i + 1);
+                if (close < 0) {
+                    break;
+                }
+                i = close + 1;
+                continue;
+            }
+            if (c == '=' && i + 1 < length && line.charAt(i + 1) == '"') {
+                int valueStart = i + 2;
+                int valueEnd = line.indexOf('"', valueStart);
+                if (valueEnd < 0) {
+                    break;
+                }
+                collectAttribute(line, keyStart(line, i), i, valueStart, valueEnd, attributes);
+                i = valueEnd + 1;
+                continue;
+            }
+            i++;
+        }
+
+        if (!hasPrefix) {
+            return UNKNOWN_TITLE;
+        }
+        if (titleStart < 0) {
+            // Unterminated quote: fall back to the first comma of the header
+            int comma = line.indexOf(',', EXTINF_PREFIX.length());
+            if (comma < 0) {
+                return UNKNOWN_TITLE;
+            }
+            titleStart = comma + 1;
+        }
+        return line.substring(titleStart);
+    }
+
+    /**
+     * Case-insensitive check whether the text contains any of the keywords
+     */
+    public static boolean containsIgnoreCase(String text, String[] keywords) {
+        int length = text.length();
+        for (String keyword : keywords) {
+            int keywordLength = keyword.length();
+            for (int i = 0; i + keywordLength <= length; i++) {
+                if (text.regionMatches(true, i, keyword, 0, keywordLength)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walk back from the '=' to the start of the attribute key
+     */
+    private static int keyStart(String line, int equalsIndex) {
+        int start = equalsIndex;
+        while (start > 0) {
+            char c = line.charAt(start - 1);
+            if (c <= ' ' || c == '"' || c == ',' || c == '=' || c == ':') {
+                break;
+            }
+            start--;
+        }
+        return start;
+    }
+
+    /**
+     * Keep only the attributes the catalog uses: group-title and tvg-*
+     */
+    private static void collectAttribute(String line, int keyStart, int keyEnd, int valueStart, int valueEnd,
+                                         Map<String, String> attributes) {
+        int keyLength = keyEnd - keyStart;
+        if (keyLength == GROUP_TITLE_KEY.length() && line.startsWith(GROUP_TITLE_KEY, keyStart)) {
+            // The first group-title wins
+            attributes.putIfAbsent(GROUP_TITLE_KEY, line.substring(valueStart, valueEnd));
+        } else if (keyLength >= TVG_KEY_PREFIX.length() && line.startsWith(TVG_KEY_PREFIX, keyStart)) {
+            attributes.put(line.substring(keyStart, keyEnd), line.substring(valueStart, valueEnd));
+        }
+    }
+}
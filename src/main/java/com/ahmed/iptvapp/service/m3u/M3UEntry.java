@@ -0,0 +1,73 @@
+package com.ahmed.iptvapp.service.m3u;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A single EXTINF/URL pair tokenized from an M3U playlist.
+ * Entries are handed downstream one by one so that an import never needs
+ * the whole playlist in memory.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class M3UEntry {
+
+    /**
+     * Kind of catalog item this entry becomes
+     */
+    private ContentType type;
+
+    /**
+     * Title as it appears after the EXTINF header
+     */
+    private String title;
+
+    /**
+     * Value of the group-title attribute
+     */
+    private String group;
+
+    /**
+     * Stream URL from the line following the EXTINF header
+     */
+    private String streamUrl;
+
+    /**
+     * Value of the tvg-logo attribute
+     */
+    private String logoUrl;
+
+    /**
+     * Attributes parsed from the EXTINF header
+     */
+    @Builder.Default
+    private Map<String, String> attributes = new HashMap<>();
+
+    /**
+     * Series name, only set for episodes
+     */
+    private String seriesName;
+
+    /**
+     * Season number, only set for episodes
+     */
+    private int seasonNumber;
+
+    /**
+     * Episode number, only set for episodes
+     */
+    private int episodeNumber;
+
+    public enum ContentType {
+        CHANNEL,
+        MOVIE,
+        EPISODE
+    }
+}
@@ -0,0 +1,135 @@
+package com.ahmed.iptvapp.service.m3u;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * HTTP download of a playlist.
+ * Sent as a conditional GET when validators from a previous fetch are known,
+ * and fingerprinted with SHA-256 as the body is read.
+ */
+public class PlaylistDownload implements Closeable {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final HttpURLConnection connection;
+    private final boolean notModified;
+    private final MessageDigest digest;
+    private InputStream inputStream;
+    private String contentHash;
+
+    private PlaylistDownload(HttpURLConnection connection, boolean notModified) {
+        this.connection = connection;
+        this.notModified = notModified;
+        try {
+            this.digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * Open a download, unconditionally
+     */
+    public static PlaylistDownload open(String url) throws IOException {
+        return open(url, null, null);
+    }
+
+    /**
+     * Open a download, asking the server to answer 304 if the content matches the validators
+     *
+     * @param etag ETag returned by the previous fetch, or null
+     * @param lastModified Last-Modified returned by the previous fetch, or null
+     */
+    public static PlaylistDownload open(String url, String etag, String lastModified) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("GET");
+        if (etag != null && !etag.isEmpty()) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        if (lastModified != null && !lastModified.isEmpty()) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+
+        boolean notModified = connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+        return new PlaylistDownload(connection, notModified);
+    }
+
+    /**
+     * Whether the server answered 304 Not Modified
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    public String getEtag() {
+        return connection.getHeaderField("ETag");
+    }
+
+    public String getLastModified() {
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    /**
+     * Length announced by the server, or -1 if unknown
+     */
+    public long getContentLength() {
+        return connection.getContentLengthLong();
+    }
+
+    /**
+     * Body of the response; everything read through it is fingerprinted
+     */
+    public InputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            inputStream = new DigestInputStream(connection.getInputStream(), digest);
+        }
+        return inputStream;
+    }
+
+    /**
+     * Copy the whole body into a temporary file, fingerprinting it on the way.
+     * The caller owns the file and must delete it.
+     */
+    public Path spoolToTempFile() throws IOException {
+        Path file = Files.createTempFile("playlist-", ".m3u");
+        try {
+            Files.copy(getInputStream(), file, StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Hex SHA-256 of the body; only meaningful once the body has been read to the end
+     */
+    public String getContentHash() {
+        if (contentHash == null) {
+            contentHash = HexFormat.of().formatHex(digest.digest());
+        }
+        return contentHash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
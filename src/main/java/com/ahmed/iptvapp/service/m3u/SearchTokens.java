@@ -0,0 +1,62 @@
+package com.ahmed.iptvapp.service.m3u;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Normalized search terms of titles and queries.
+ * A title is split into runs of letters and digits, lowercased and stripped of accents, so "Amélie (2001)"
+ * is stored as [amelie, 2001] and found by "amel" or "AMELIE". Tokens of a title are kept distinct and in order.
+ */
+public final class SearchTokens {
+
+    private SearchTokens() {
+    }
+
+    /**
+     * Distinct normalized tokens of a text, in order of appearance; empty for null or blank text
+     */
+    public static List<String> tokenize(String text) {
+        return new ArrayList<>(new LinkedHashSet<>(words(text)));
+    }
+
+    /**
+     * All normalized tokens of a text joined by single spaces, "" for null or blank text.
+     * Autocompletion matches typed text against this form, so "the dark kn" completes "The Dark Knight".
+     */
+    public static String normalize(String text) {
+        return String.join(" ", words(text));
+    }
+
+    private static List<String> words(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < decomposed.length(); ) {
+            int codePoint = decomposed.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (Character.getType(codePoint) == Character.NON_SPACING_MARK) {
+                // Accent split off its letter by the decomposition
+                continue;
+            }
+            if (Character.isLetterOrDigit(codePoint)) {
+                word.appendCodePoint(codePoint);
+            } else if (!word.isEmpty()) {
+                words.add(word.toString().toLowerCase(Locale.ROOT));
+                word.setLength(0);
+            }
+        }
+        if (!word.isEmpty()) {
+            words.add(word.toString().toLowerCase(Locale.ROOT));
+        }
+        return words;
+    }
+}
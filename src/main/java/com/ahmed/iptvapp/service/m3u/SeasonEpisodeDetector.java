@@ -0,0 +1,223 @@
+package com.ahmed.iptvapp.service.m3u;
+
+/**
+ * Hand-written detector for season/episode markers in episode titles.
+ * Recognises the "ShowName S01E01", "ShowName - Season 1 Episode 1" and "ShowName 1x01" forms,
+ * in that order of preference, without compiling or running regular expressions.
+ */
+public final class SeasonEpisodeDetector {
+
+    private static final String SEASON = "Season";
+    private static final String EPISODE = "Episode";
+
+    private SeasonEpisodeDetector() {
+    }
+
+    /**
+     * Extract the series name from an episode title, or return the title if no marker follows a name
+     */
+    public static String seriesName(String title) {
+        int split = nameSplit(title, Marker.SXXEYY);
+        if (split < 0) {
+            split = nameSplit(title, Marker.SEASON_EPISODE);
+        }
+        if (split < 0) {
+            split = nameSplit(title, Marker.NXM);
+        }
+        return split < 0 ? title : title.substring(0, split).trim();
+    }
+
+    /**
+     * Extract season and episode numbers from a title
+     *
+     * @return [season, episode], or [0, 0] if the title has no marker
+     */
+    public static int[] seasonEpisode(String title) {
+        int[] result = {0, 0};
+        int length = title.length();
+
+        // S01E01 anywhere in the title
+        for (int i = 0; i < length; i++) {
+            int end = Marker.SXXEYY.matchEnd(title, i);
+            if (end >= 0) {
+                int seasonEnd = digitsEnd(title, i + 1);
+                result[0] = parseDigits(title, i + 1, seasonEnd);
+                result[1] = parseDigits(title, seasonEnd + 1, end);
+                return result;
+            }
+        }
+
+        // "Season X Episode Y"
+        for (int i = title.indexOf(SEASON); i >= 0; i = title.indexOf(SEASON, i + 1)) {
+            int seasonStart = spacesEnd(title, i + SEASON.length());
+            int seasonEnd = digitsEnd(title, seasonStart);
+            if (seasonStart == i + SEASON.length() || seasonEnd == seasonStart) {
+                continue;
+            }
+            int episodeWord = spacesEnd(title, seasonEnd);
+            if (episodeWord == seasonEnd || !title.startsWith(EPISODE, episodeWord)) {
+                continue;
+            }
+            int episodeStart = spacesEnd(title, episodeWord + EPISODE.length());
+            int episodeEnd = digitsEnd(title, episodeStart);
+            if (episodeStart == episodeWord + EPISODE.length() || episodeEnd == episodeStart) {
+                continue;
+            }
+            result[0] = parseDigits(title, seasonStart, seasonEnd);
+            result[1] = parseDigits(title, episodeStart, episodeEnd);
+            return result;
+        }
+
+        // 1x01: only the start of a digit run can begin a match
+        int i = 0;
+        while (i < length) {
+            if (!isDigit(title.charAt(i))) {
+                i++;
+                continue;
+            }
+            int end = Marker.NXM.matchEnd(title, i);
+            if (end >= 0) {
+                int seasonEnd = digitsEnd(title, i);
+                result[0] = parseDigits(title, i, seasonEnd);
+                result[1] = parseDigits(title, seasonEnd + 1, end);
+                return result;
+            }
+            i = digitsEnd(title, i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Find the shortest non-empty name followed by whitespace and the marker.
+     *
+     * @return end index of the name, or -1 if the marker never follows a name
+     */
+    private static int nameSplit(String title, Marker marker) {
+        int length = title.length();
+        int p = 1;
+        while (p < length) {
+            if (!isSpace(title.charAt(p))) {
+                p++;
+                continue;
+            }
+            int markerStart = spacesEnd(title, p);
+            if (marker.matchEnd(title, markerStart) >= 0) {
+                return p;
+            }
+            p = markerStart;
+        }
+        return -1;
+    }
+
+    private enum Marker {
+        /**
+         * [Ss]\d+[Ee]\d+
+         */
+        SXXEYY {
+            @Override
+            int matchEnd(String s, int i) {
+                if (i >= s.length() || (s.charAt(i) != 'S' && s.charAt(i) != 's')) {
+                    return -1;
+                }
+                int seasonEnd = digitsEnd(s, i + 1);
+                if (seasonEnd == i + 1 || seasonEnd >= s.length()
+                        || (s.charAt(seasonEnd) != 'E' && s.charAt(seasonEnd) != 'e')) {
+                    return -1;
+                }
+                int episodeEnd = digitsEnd(s, seasonEnd + 1);
+                return episodeEnd == seasonEnd + 1 ? -1 : episodeEnd;
+            }
+        },
+        /**
+         * -\s+Season\s+\d+\s+Episode\s+\d+
+         */
+        SEASON_EPISODE {
+            @Override
+            int matchEnd(String s, int i) {
+                if (i >= s.length() || s.charAt(i) != '-') {
+                    return -1;
+                }
+                int season = spacesEnd(s, i + 1);
+                if (season == i + 1 || !s.startsWith(SEASON, season)) {
+                    return -1;
+                }
+                int seasonStart = spacesEnd(s, season + SEASON.length());
+                int seasonEnd = digitsEnd(s, seasonStart);
+                if (seasonStart == season + SEASON.length() || seasonEnd == seasonStart) {
+                    return -1;
+                }
+                int episode = spacesEnd(s, seasonEnd);
+                if (episode == seasonEnd || !s.startsWith(EPISODE, episode)) {
+                    return -1;
+                }
+                int episodeStart = spacesEnd(s, episode + EPISODE.length());
+                int episodeEnd = digitsEnd(s, episodeStart);
+                if (episodeStart == episode + EPISODE.length() || episodeEnd == episodeStart) {
+                    return -1;
+                }
+                return episodeEnd;
+            }
+        },
+        /**
+         * \d+x\d+
+         */
+        NXM {
+            @Override
+            int matchEnd(String s, int i) {
+                int seasonEnd = digitsEnd(s, i);
+                if (seasonEnd == i || seasonEnd >= s.length() || s.charAt(seasonEnd) != 'x') {
+                    return -1;
+                }
+                int episodeEnd = digitsEnd(s, seasonEnd + 1);
+                return episodeEnd == seasonEnd + 1 ? -1 : episodeEnd;
+            }
+        };
+
+        /**
+         * @return index just past the marker starting at i, or -1 if there is none
+         */
+        abstract int matchEnd(String s, int i);
+    }
+
+    private static int digitsEnd(String s, int from) {
+        int i = from;
+        while (i < s.length() && isDigit(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int spacesEnd(String s, int from) {
+        int i = from;
+        while (i < s.length() && isSpace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Parse a digit run, saturating instead of overflowing on absurdly long runs
+     */
+    private static int parseDigits(String s, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+            if (value > Integer.MAX_VALUE) {
+                return Integer.MAX_VALUE;
+            }
+        }
+        return (int) value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Same character class as the regex \s
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
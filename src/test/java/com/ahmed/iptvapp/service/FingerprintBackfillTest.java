@@ -0,0 +1,55 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.model.Channel;
+import com.ahmed.iptvapp.model.Movie;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FingerprintBackfillTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final FingerprintBackfill backfill = new FingerprintBackfill(mongoTemplate, Runnable::run);
+
+    @Test
+    void storesTheFingerprintFavoritesOfLegacyContentAreKeyedBy() {
+        Document legacy = new Document("_id", "c1")
+                .append("playlistId", "p1")
+                .append("streamUrl", "http://host/bbc1")
+                .append("name", "BBC One");
+        when(mongoTemplate.getCollectionName(Channel.class)).thenReturn("channels");
+        when(mongoTemplate.getCollectionName(Movie.class)).thenReturn("movies");
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("channels")))
+                .thenReturn(List.of(legacy), List.of());
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("movies"))).thenReturn(List.of());
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "channels")).thenReturn(bulk);
+
+        backfill.backfill();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulk).updateOne(query.capture(), update.capture());
+        verify(bulk).execute();
+        verify(mongoTemplate, never()).bulkOps(BulkOperations.BulkMode.UNORDERED, "movies");
+
+        // The key a toggle on the legacy channel stored, so the favorites listing now matches it
+        String favoriteKey = FavoriteService.key("p1", null, "http://host/bbc1", "BBC One");
+        assertEquals("c1", query.getValue().getQueryObject().get("_id"));
+        assertEquals(new Document("$set", new Document("fingerprint", favoriteKey)), update.getValue().getUpdateObject());
+    }
+}
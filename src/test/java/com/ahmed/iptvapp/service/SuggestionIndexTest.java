@@ -0,0 +1,59 @@
+package com.ahmed.iptvapp.service;
+
+import com.ahmed.iptvapp.dto.SearchHitDto;
+import com.ahmed.iptvapp.dto.SuggestionDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SuggestionIndexTest {
+
+    @Test
+    void ranksTitlesStartingWithThePrefixFirst() {
+        SuggestionIndex index = new SuggestionIndex.Builder(1)
+                .add(SearchHitDto.Type.MOVIE, "m1", "The Dark Knight Rises")
+                .add(SearchHitDto.Type.MOVIE, "m2", "Batman: The Dark Knight")
+                .add(SearchHitDto.Type.MOVIE, "m3", "The Dark Knight")
+                .build();
+
+        assertEquals(List.of("The Dark Knight", "The Dark Knight Rises", "Batman: The Dark Knight"),
+                titles(index.suggest("the dark", null, 10)));
+        // No title starts with it: shorter titles first
+        assertEquals(List.of("The Dark Knight", "The Dark Knight Rises", "Batman: The Dark Knight"),
+                titles(index.suggest("kni", null, 10)));
+    }
+
+    @Test
+    void findsTypeAmongManyKeysOfOtherTypes() {
+        SuggestionIndex.Builder builder = new SuggestionIndex.Builder(1);
+        // More channel keys sort before the series than a lookup scans
+        for (int i = 0; i < 1000; i++) {
+            builder.add(SearchHitDto.Type.CHANNEL, "c" + i, String.format("The %04d Channel", i));
+        }
+        builder.add(SearchHitDto.Type.SERIES, "s1", "The Wire");
+        SuggestionIndex index = builder.build();
+
+        List<SuggestionDto> series = index.suggest("the", SearchHitDto.Type.SERIES, 10);
+        assertEquals(1, series.size());
+        assertEquals("s1", series.get(0).getId());
+        assertEquals(SearchHitDto.Type.SERIES, series.get(0).getType());
+
+        assertEquals(10, index.suggest("the", SearchHitDto.Type.CHANNEL, 10).size());
+    }
+
+    @Test
+    void ignoresBlankPrefixes() {
+        SuggestionIndex index = new SuggestionIndex.Builder(1)
+                .add(SearchHitDto.Type.CHANNEL, "c1", "News")
+                .build();
+
+        assertEquals(List.of(), index.suggest("  ", null, 10));
+        assertEquals(List.of(), index.suggest("news", null, 0));
+    }
+
+    private static List<String> titles(List<SuggestionDto> suggestions) {
+        return suggestions.stream().map(SuggestionDto::getTitle).toList();
+    }
+}
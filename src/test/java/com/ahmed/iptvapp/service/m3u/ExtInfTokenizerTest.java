@@ -0,0 +1,54 @@
+package com.ahmed.iptvapp.service.m3u;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtInfTokenizerTest {
+
+    @Test
+    void readsAttributesAndTitle() {
+        Map<String, String> attributes = new HashMap<>();
+        String title = ExtInfTokenizer.tokenize(
+                "#EXTINF:-1 tvg-id=\"bbc1.uk\" tvg-name=\"BBC One\" tvg-logo=\"http://logo/bbc1.png\" "
+                        + "group-title=\"UK\" catchup=\"default\",BBC One HD", attributes);
+
+        assertEquals("BBC One HD", title);
+        assertEquals(Map.of(
+                "tvg-id", "bbc1.uk",
+                "tvg-name", "BBC One",
+                "tvg-logo", "http://logo/bbc1.png",
+                "group-title", "UK"), attributes);
+    }
+
+    @Test
+    void ignoresCommasInsideQuotedValues() {
+        Map<String, String> attributes = new HashMap<>();
+        String title = ExtInfTokenizer.tokenize(
+                "#EXTINF:-1 group-title=\"Movies, Action\" tvg-logo=\"\",Die Hard, 1988", attributes);
+
+        assertEquals("Die Hard, 1988", title);
+        assertEquals("Movies, Action", attributes.get("group-title"));
+        assertEquals("", attributes.get("tvg-logo"));
+    }
+
+    @Test
+    void handlesMissingTitle() {
+        assertEquals("Unknown", ExtInfTokenizer.tokenize("#EXTINF:-1 tvg-id=\"x\"", new HashMap<>()));
+        assertEquals("Unknown", ExtInfTokenizer.tokenize("#EXTINF -1,Title", new HashMap<>()));
+        assertEquals("", ExtInfTokenizer.tokenize("#EXTINF:-1,", new HashMap<>()));
+    }
+
+    @Test
+    void matchesKeywordsIgnoringCase() {
+        String[] keywords = {"movie", "cinema", "film"};
+        assertTrue(ExtInfTokenizer.containsIgnoreCase("VOD | MOVIES 2024", keywords));
+        assertTrue(ExtInfTokenizer.containsIgnoreCase("Cinema", keywords));
+        assertFalse(ExtInfTokenizer.containsIgnoreCase("Sports", keywords));
+    }
+}
@@ -0,0 +1,107 @@
+package com.ahmed.iptvapp.service.m3u;
+
+import com.ahmed.iptvapp.service.M3UParserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelParseTest {
+
+    // Smallest chunk the parser accepts: its read buffer
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final M3UParserService parser = new M3UParserService(pool);
+
+    ParallelParseTest() {
+        ReflectionTestUtils.setField(parser, "parallelParseChunkSize", CHUNK_SIZE);
+    }
+
+    @AfterEach
+    void shutDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void matchesSequentialParserOnGeneratedPlaylists() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 30; i++) {
+            assertSameEntries(playlist(random, 4 * CHUNK_SIZE + random.nextInt(4 * CHUNK_SIZE)));
+        }
+    }
+
+    @Test
+    void matchesSequentialParserWhenAnEntryOutgrowsAChunk() throws IOException {
+        String longTitle = "x".repeat(3 * CHUNK_SIZE);
+        String content = "#EXTM3U\r\n"
+                + "#EXTINF:-1 group-title=\"News\",Before\r\nhttp://host/before\r\n"
+                + "#EXTINF:-1 group-title=\"Movies\"," + longTitle + "\r\nhttp://host/long\r\n"
+                + "#EXTINF:-1 group-title=\"Series\",After S01E02\nhttp://host/after";
+        assertSameEntries(content);
+    }
+
+    @Test
+    void matchesSequentialParserOnPlaylistsSmallerThanAChunk() throws IOException {
+        assertSameEntries("");
+        assertSameEntries("#EXTM3U\n");
+        assertSameEntries("#EXTINF:-1,No url\r\n#EXTINF:-1,Title\r\nhttp://host/1");
+    }
+
+    private void assertSameEntries(String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        List<M3UEntry> sequential = new ArrayList<>();
+        List<M3UEntry> parallel = new ArrayList<>();
+
+        long sequentialCount = parser.parseStream(new ByteArrayInputStream(bytes), sequential::add);
+        long parallelCount = parser.parseStreamParallel(new ByteArrayInputStream(bytes), parallel::add);
+
+        assertEquals(sequentialCount, parallelCount);
+        assertEquals(sequential, parallel);
+    }
+
+    /**
+     * A playlist of at least the given size mixing line endings, headers without a URL, comments and blank lines,
+     * so entries land across chunk boundaries at every offset
+     */
+    private static String playlist(Random random, int minLength) {
+        String[] groups = {"News", "Sports", "VOD Movies", "TV Shows", "Cinema", "Kids"};
+        StringBuilder content = new StringBuilder(random.nextBoolean() ? "#EXTM3U\n" : "");
+        int entry = 0;
+        while (content.length() < minLength) {
+            String newline = random.nextInt(3) == 0 ? "\r\n" : "\n";
+            content.append("#EXTINF:-1 tvg-id=\"").append(entry)
+                    .append("\" tvg-logo=\"http://logo/").append(random.nextInt(1000))
+                    .append(".png\" group-title=\"").append(groups[random.nextInt(groups.length)])
+                    .append("\",Title ").append(entry)
+                    .append(" S").append(random.nextInt(10)).append("E").append(random.nextInt(30))
+                    .append(" ").append("y".repeat(random.nextInt(random.nextInt(50) == 0 ? 2000 : 40)))
+                    .append(newline);
+            switch (random.nextInt(8)) {
+                // Header without a URL, replaced by the next one
+                case 0 -> {
+                    entry++;
+                    continue;
+                }
+                case 1 -> content.append("#EXTVLCOPT:http-user-agent=Player").append(newline);
+                case 2 -> content.append(newline);
+                default -> {
+                }
+            }
+            content.append("http://host/stream/").append(entry++);
+            if (random.nextInt(50) != 0) {
+                content.append(newline);
+            }
+        }
+        return content.toString();
+    }
+}
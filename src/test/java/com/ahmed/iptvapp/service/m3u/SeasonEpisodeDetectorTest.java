@@ -0,0 +1,86 @@
+package com.ahmed.iptvapp.service.m3u;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SeasonEpisodeDetectorTest {
+
+    private static final List<Pattern> NAME_PATTERNS = List.of(
+            Pattern.compile("(.+?)\\s+[Ss]\\d+[Ee]\\d+.*"),
+            Pattern.compile("(.+?)\\s+-\\s+Season\\s+\\d+\\s+Episode\\s+\\d+.*"),
+            Pattern.compile("(.+?)\\s+\\d+x\\d+.*"));
+
+    private static final List<Pattern> NUMBER_PATTERNS = List.of(
+            Pattern.compile("[Ss](\\d+)[Ee](\\d+)"),
+            Pattern.compile("Season\\s+(\\d+)\\s+Episode\\s+(\\d+)"),
+            Pattern.compile("(\\d+)x(\\d+)"));
+
+    @Test
+    void recognisesCommonForms() {
+        assertEquals("Breaking Bad", SeasonEpisodeDetector.seriesName("Breaking Bad S01E02"));
+        assertArrayEquals(new int[]{1, 2}, SeasonEpisodeDetector.seasonEpisode("Breaking Bad S01E02"));
+
+        assertEquals("The Wire", SeasonEpisodeDetector.seriesName("The Wire - Season 3 Episode 11"));
+        assertArrayEquals(new int[]{3, 11}, SeasonEpisodeDetector.seasonEpisode("The Wire - Season 3 Episode 11"));
+
+        assertEquals("Friends", SeasonEpisodeDetector.seriesName("Friends 10x17 The Last One"));
+        assertArrayEquals(new int[]{10, 17}, SeasonEpisodeDetector.seasonEpisode("Friends 10x17 The Last One"));
+
+        assertEquals("Documentary", SeasonEpisodeDetector.seriesName("Documentary"));
+        assertArrayEquals(new int[]{0, 0}, SeasonEpisodeDetector.seasonEpisode("Documentary"));
+    }
+
+    @Test
+    void matchesLegacyRegexBehaviour() {
+        String[] fragments = {"Show", " ", "  ", "\t", "S", "s", "E", "e", "01", "2", "x", "-", "Season", "Episode",
+                "Name", "S01E01", "1x02", " - Season 2 Episode 3", "a", "99"};
+        Random random = new Random(42);
+
+        for (int n = 0; n < 200_000; n++) {
+            StringBuilder title = new StringBuilder();
+            int parts = 1 + random.nextInt(8);
+            for (int i = 0; i < parts; i++) {
+                title.append(fragments[random.nextInt(fragments.length)]);
+            }
+            String t = title.toString();
+
+            assertEquals(legacySeriesName(t), SeasonEpisodeDetector.seriesName(t), t);
+            assertArrayEquals(legacySeasonEpisode(t), SeasonEpisodeDetector.seasonEpisode(t), t);
+        }
+    }
+
+    private static String legacySeriesName(String title) {
+        for (Pattern pattern : NAME_PATTERNS) {
+            Matcher m = pattern.matcher(title);
+            if (m.matches()) {
+                return m.group(1).trim();
+            }
+        }
+        return title;
+    }
+
+    private static int[] legacySeasonEpisode(String title) {
+        for (Pattern pattern : NUMBER_PATTERNS) {
+            Matcher m = pattern.matcher(title);
+            if (m.find()) {
+                return new int[]{saturate(m.group(1)), saturate(m.group(2))};
+            }
+        }
+        return new int[]{0, 0};
+    }
+
+    /**
+     * The legacy code threw on overflow; the detector saturates instead
+     */
+    private static int saturate(String digits) {
+        return new BigInteger(digits).min(BigInteger.valueOf(Integer.MAX_VALUE)).intValue();
+    }
+}